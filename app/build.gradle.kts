@@ -37,6 +37,7 @@ android {
 
 dependencies {
 
+    implementation(project(":core"))
     implementation("net.vrallev.android:cat:1.0.5")
 
     implementation(libs.androidx.core.ktx)
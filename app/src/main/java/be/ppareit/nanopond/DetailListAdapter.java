@@ -30,6 +30,7 @@ import android.widget.TextView;
 
 import be.ppareit.nanopond.core.Cell;
 import be.ppareit.nanopond.core.NanoPond;
+import be.ppareit.nanopond.core.RenderState;
 import be.ppareit.nanopond.gui.NanoPondView;
 
 public class DetailListAdapter extends BaseAdapter {
@@ -40,6 +41,8 @@ public class DetailListAdapter extends BaseAdapter {
     private NanoPondView mView;
     private NanoPond mNanopond;
 
+    /* Copy of the watched cell from the latest frame, never a cell of the pond itself */
+    private final Cell mWatchedCell = new Cell();
     private Cell mActiveCell = null;
     private int mActiveX = -1;
     private int mActiveY = -1;
@@ -57,7 +60,13 @@ public class DetailListAdapter extends BaseAdapter {
                         if (mView.isCellActive()) {
                             mActiveX = mView.getActiveCellCol();
                             mActiveY = mView.getActiveCellRow();
-                            mActiveCell = mNanopond.pond[mActiveX][mActiveY];
+                            if (!mNanopond.isRunning()) {
+                                // a paused pond publishes no frames by itself
+                                mNanopond.publishFrame();
+                            }
+                            RenderState renderState = mNanopond.getRenderState();
+                            mActiveCell = renderState.readWatchedCell(mWatchedCell)
+                                    ? mWatchedCell : null;
                         } else {
                             mActiveCell = null;
                         }
@@ -82,23 +91,23 @@ public class DetailListAdapter extends BaseAdapter {
             return null;
         switch (position) {
         case 0:
-            return new Pair<>(getLabel(position), String.valueOf(mActiveCell.lineage));
+            return new Pair<>(getLabel(position), String.valueOf(mActiveCell.getLineage()));
         case 1:
-            return new Pair<>(getLabel(position), String.valueOf(mActiveCell.energy));
+            return new Pair<>(getLabel(position), String.valueOf(mActiveCell.getEnergy()));
         case 2:
             return new Pair<>(getLabel(position), String.valueOf(mActiveX));
         case 3:
             return new Pair<>(getLabel(position), String.valueOf(mActiveY));
         case 4:
-            return new Pair<>(getLabel(position), String.valueOf(mActiveCell.ID));
+            return new Pair<>(getLabel(position), String.valueOf(mActiveCell.getID()));
         case 5:
-            return new Pair<>(getLabel(position), String.valueOf(mActiveCell.parentID));
+            return new Pair<>(getLabel(position), String.valueOf(mActiveCell.getParentID()));
         case 6:
-            return new Pair<>(getLabel(position), String.valueOf(mActiveCell.generation));
+            return new Pair<>(getLabel(position), String.valueOf(mActiveCell.getGeneration()));
         case 7:
-            return new Pair<>(getLabel(position), hexa(mActiveCell.genome));
+            return new Pair<>(getLabel(position), hexa(mActiveCell.getGenome()));
         case 8:
-            return new Pair<>(getLabel(position), disassemble(mActiveCell.genome, mNanopond));
+            return new Pair<>(getLabel(position), disassemble(mActiveCell.getGenome(), mNanopond));
         }
         return null;
     }
@@ -34,22 +34,22 @@ import be.ppareit.nanopond.core.NanoPond;
 
 public class ReportListAdapter extends BaseAdapter {
 
-    static final int ROW_COUNT = 8;
+    static final int ROW_COUNT = 9;
 
     private Activity activity;
-    private NanoPond nanopond;
+    private NanoPond.Subscription subscription;
     private volatile NanoPond.Report report;
 
     public ReportListAdapter(Context context, NanoPond np) {
         activity = (Activity) context;
-        nanopond = np;
-        report = nanopond.getReport();
+        subscription = np.subscribe();
+        report = subscription.poll();
 
         new Thread(() -> {
             try {
                 Thread.sleep(1000);
                 while (true) {
-                    report = nanopond.getReport();
+                    report = subscription.poll();
                     activity.runOnUiThread(() -> notifyDataSetChanged());
                     Thread.sleep(100);
                 }
@@ -83,6 +83,8 @@ public class ReportListAdapter extends BaseAdapter {
                 return new Pair<>(getLabel(position), report.replaced);
             case 7:
                 return new Pair<>(getLabel(position), report.shares);
+            case 8:
+                return new Pair<>(getLabel(position), Math.round(report.stepsPerSecond));
         }
         return null;
     }
@@ -105,6 +107,8 @@ public class ReportListAdapter extends BaseAdapter {
                 return "Replaced";
             case 7:
                 return "Shares";
+            case 8:
+                return "Steps/second";
             default:
                 return null;
         }
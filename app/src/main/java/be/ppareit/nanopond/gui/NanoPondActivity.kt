@@ -61,10 +61,13 @@ import be.ppareit.android.openRawTextFile
 import be.ppareit.nanopond.DetailListAdapter
 import be.ppareit.nanopond.R
 import be.ppareit.nanopond.ReportListAdapter
+import be.ppareit.nanopond.core.Checkpoint
 import be.ppareit.nanopond.core.NanoPond
 import be.ppareit.nanopond.core.isValidGenomeHex
 import net.vrallev.android.cat.Cat
 import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
 import kotlin.math.roundToInt
 
 class NanoPondActivity : ComponentActivity() {
@@ -73,10 +76,18 @@ class NanoPondActivity : ComponentActivity() {
 
     private var nanoPondView: NanoPondView? = null
 
+    /* The pond is saved here when the activity pauses, and restored when it is created */
+    private val checkpointFile: Path
+        get() = filesDir.toPath().resolve("pond.checkpoint")
+
+    /* Whether the pond was running when the activity paused */
+    private var runOnResume = false
+
     public override fun onCreate(savedInstanceState: Bundle?) {
         setTheme(R.style.AppTheme)
         super.onCreate(savedInstanceState)
 
+        restoreCheckpoint()
         nanoPond.run()
 
         setContent {
@@ -398,7 +409,7 @@ class NanoPondActivity : ComponentActivity() {
         val okButton = dialog.findViewById<Button>(R.id.ok)
         val activeX = view.activeCellCol
         val activeY = view.activeCellRow
-        val activeCell = nanoPond.pond[activeX][activeY]
+        val activeCell = nanoPond.getCell(activeX, activeY)
         hexaText.text = activeCell.hexa
         hexaText.addTextChangedListener(object : TextWatcher {
             override fun onTextChanged(s: CharSequence, start: Int, before: Int, count: Int) {
@@ -416,13 +427,41 @@ class NanoPondActivity : ComponentActivity() {
         return dialog
     }
 
+    private fun restoreCheckpoint() {
+        if (!Files.exists(checkpointFile)) {
+            return
+        }
+        try {
+            Checkpoint.restore(nanoPond, checkpointFile)
+            Cat.d("Restored the pond of year " + nanoPond.clock)
+        } catch (e: IOException) {
+            Cat.e("Could not restore the pond: " + e.message)
+        } catch (e: IllegalArgumentException) {
+            Cat.e("Could not restore the pond: " + e.message)
+        }
+    }
+
+    private fun saveCheckpoint() {
+        try {
+            Checkpoint.save(nanoPond, checkpointFile)
+        } catch (e: IOException) {
+            Cat.e("Could not save the pond: " + e.message)
+        }
+    }
+
     override fun onPause() {
         super.onPause()
         nanoPondView?.setMode(NanoPondView.State.PAUSED)
+        runOnResume = nanoPond.isRunning
+        nanoPond.pauze()
+        saveCheckpoint()
     }
 
     override fun onResume() {
         super.onResume()
         nanoPondView?.setMode(NanoPondView.State.RUNNING)
+        if (runOnResume) {
+            nanoPond.run()
+        }
     }
 }
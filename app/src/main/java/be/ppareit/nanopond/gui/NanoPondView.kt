@@ -23,18 +23,20 @@ import android.content.Context
 import android.graphics.Canvas
 import android.graphics.Matrix
 import android.graphics.Paint
+import android.graphics.Rect
+import android.graphics.RectF
 import android.util.AttributeSet
 import android.view.GestureDetector
 import android.view.MotionEvent
 import android.view.ScaleGestureDetector
 import be.ppareit.android.GameLoopView
-import be.ppareit.nanopond.core.Cell
 import be.ppareit.nanopond.core.NanoPond
 import net.vrallev.android.cat.Cat
 
 
 private const val MIN_SCALE = 1.0f
 private const val MAX_SCALE = 40.0f
+private const val EMPTY_PIXEL = 0xff000000.toInt()
 
 class NanoPondView(
     context: Context,
@@ -54,6 +56,24 @@ class NanoPondView(
     private val backgroundPaint = Paint().apply { color = 0xff000000.toInt() }
     private val cellPaint = Paint()
     private val activeCellPaint = Paint().apply { color = 0xff00ffff.toInt() }
+    // cells must stay sharp squares when zoomed in, so no filtering
+    private val pondPaint = Paint().apply { isFilterBitmap = false }
+
+    // the pond is rendered one pixel per cell, at several levels of detail, and drawn
+    // as a single bitmap; only the pixels of cells changed in the published frames
+    // are rendered again
+    private val renderState = nanoPond.renderState
+    private val frame = renderState.newSnapshot()
+    private val mipmap = PondMipmap(nanoPond.sizeX, nanoPond.sizeY)
+    private val colors = IntArray(nanoPond.sizeX * nanoPond.sizeY)
+
+    // part of the pond on screen, and what was last copied to the bitmaps
+    private val inverseMatrix = Matrix()
+    private val visibleArea = RectF()
+    private val visibleCells = Rect()
+    private val sourceRect = Rect()
+    private val uploadedRect = Rect()
+    private var uploadedLevel = -1
 
     private val moveDetector = GestureDetector(context, MoveListener())
     private val scaleDetector = ScaleGestureDetector(context, ScaleListener())
@@ -82,6 +102,14 @@ class NanoPondView(
     private val scale: Float
         get() = drawMatrix.mapRadius(1f)
 
+    // large ponds may be zoomed out until they fit the view
+    private val minScale: Float
+        get() = minOf(
+            MIN_SCALE,
+            width.toFloat() / nanoPond.sizeX,
+            height.toFloat() / nanoPond.sizeY
+        )
+
     enum class State {
         RUNNING, PAUSED
     }
@@ -122,9 +150,10 @@ class NanoPondView(
             val r = pts[1].toInt()
             Cat.d("Tapped: $c  $r")
 
-            if (c in 0 until NanoPond.POND_SIZE_X && r in 0 until NanoPond.POND_SIZE_Y) {
+            if (c in 0 until nanoPond.sizeX && r in 0 until nanoPond.sizeY) {
                 selectedCellCol = c
                 selectedCellRow = r
+                renderState.setWatchedCell(nanoPond.getIndex(c, r))
             }
             return true
         }
@@ -137,7 +166,7 @@ class NanoPondView(
 
             // limit zooming
             val scale = factor * scale
-            if (scale !in MIN_SCALE..MAX_SCALE) {
+            if (scale !in minScale..MAX_SCALE) {
                 return false
             }
 
@@ -167,10 +196,8 @@ class NanoPondView(
         if (isInEditMode)
             return
 
-        val pond = nanoPond.pond
-
-        val cols = NanoPond.POND_SIZE_X
-        val rows = NanoPond.POND_SIZE_Y
+        val cols = nanoPond.sizeX
+        val rows = nanoPond.sizeY
         val size = 1f
 
         canvas.drawRect(0f, 0f, width.toFloat(), height.toFloat(), canvasPaint)
@@ -178,21 +205,50 @@ class NanoPondView(
         canvas.save()
         canvas.concat(drawMatrix)
 
-        canvas.drawRect(0f, 0f, cols * size, rows * size, backgroundPaint)
-
-        // draw all the individual cells
-        for (c in 0 until cols) {
-            for (r in 0 until rows) {
-                val cell = pond[c][r]
-                if (cell.generation > 2 && cell.energy > 0) {
-                    val left = c * size
-                    val top = r * size
-                    val right = c * size + size
-                    val bottom = r * size + size
-                    cellPaint.color = getColor(cell)
-                    canvas.drawRect(left, top, right, bottom, cellPaint)
+        // render the changed cells of the latest frame into the pixel buffers, cells are
+        // numbered row by row just like the pixels
+        val changed = renderState.read(frame)
+        if (changed) {
+            if (frame.changedCount > colors.size / 4) {
+                for (i in colors.indices) {
+                    colors[i] = if (frame.viable[i]) frame.color[i] else EMPTY_PIXEL
                 }
+                mipmap.setAll(colors)
+            } else {
+                for (n in 0 until frame.changedCount) {
+                    val i = frame.changed[n]
+                    val color = if (frame.viable[i]) frame.color[i] else EMPTY_PIXEL
+                    mipmap.set(i % cols, i / cols, color)
+                }
+            }
+        }
+
+        // only the cells on screen are copied to a bitmap and drawn, from the level of
+        // detail that has about a pixel per screen pixel
+        drawMatrix.invert(inverseMatrix)
+        visibleArea.set(0f, 0f, width.toFloat(), height.toFloat())
+        inverseMatrix.mapRect(visibleArea)
+        visibleArea.roundOut(visibleCells)
+        if (visibleCells.intersect(0, 0, cols, rows)) {
+            val level = mipmap.levelFor(scale)
+            sourceRect.set(
+                visibleCells.left shr level,
+                visibleCells.top shr level,
+                (visibleCells.right + (1 shl level) - 1) shr level,
+                (visibleCells.bottom + (1 shl level) - 1) shr level
+            )
+            if (changed || level != uploadedLevel || !uploadedRect.contains(sourceRect)) {
+                mipmap.upload(level, sourceRect)
+                uploadedLevel = level
+                uploadedRect.set(sourceRect)
             }
+            visibleArea.set(
+                (sourceRect.left shl level).toFloat(),
+                (sourceRect.top shl level).toFloat(),
+                (sourceRect.right shl level).toFloat(),
+                (sourceRect.bottom shl level).toFloat()
+            )
+            canvas.drawBitmap(mipmap.bitmap(level), sourceRect, visibleArea, pondPaint)
         }
 
         // draw the active cell
@@ -206,9 +262,9 @@ class NanoPondView(
             top += size / 8
             right -= size / 8
             bottom -= size / 8
-            val cell = pond[selectedCellCol][selectedCellRow]
-            if (cell.generation > 2 && cell.energy > 0) {
-                cellPaint.color = getColor(cell)
+            val i = nanoPond.getIndex(selectedCellCol, selectedCellRow)
+            if (frame.viable[i]) {
+                cellPaint.color = frame.color[i]
                 canvas.drawRect(left, top, right, bottom, cellPaint)
             } else {
                 canvas.drawRect(left, top, right, bottom, backgroundPaint)
@@ -225,7 +281,7 @@ class NanoPondView(
         Cat.d("size changed")
 
         drawMatrix.reset()
-        drawMatrix.postTranslate(-NanoPond.POND_SIZE_X / 2f, -NanoPond.POND_SIZE_Y / 2f)
+        drawMatrix.postTranslate(-nanoPond.sizeX / 2f, -nanoPond.sizeY / 2f)
 
         val scale = 4 * resources.displayMetrics.density
         drawMatrix.postScale(scale, scale)
@@ -234,12 +290,6 @@ class NanoPondView(
         // move left-top position to middle of screen
         drawMatrix.postTranslate(width / 2f, height / 2f)
     }
-
-    companion object {
-        internal fun getColor(cell: Cell): Int {
-            return NanoPondColors.getColor(cell)
-        }
-    }
 }
 
 
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http:></http:>//www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ * Pieter Pareit - initial API and implementation
+ */
+
+package be.ppareit.nanopond.gui
+
+import android.graphics.Bitmap
+import android.graphics.Rect
+
+/**
+ * The pixels of a pond at several levels of detail. Level 0 has a pixel per cell, every
+ * next level is half as wide and high, with each pixel the average of the pixels it
+ * covers. A zoomed out view draws the level with about one pixel per screen pixel,
+ * so the work per frame follows the screen and not the pond.
+ */
+internal class PondMipmap(sizeX: Int, sizeY: Int) {
+
+    val levels: Int
+    private val widths: IntArray
+    private val heights: IntArray
+    private val pixels: Array<IntArray>
+    private val bitmaps: Array<Bitmap>
+
+    init {
+        var count = 1
+        while (maxOf(sizeX, sizeY) shr (count - 1) > 1) {
+            count++
+        }
+        levels = count
+        widths = IntArray(levels) { (sizeX + (1 shl it) - 1) shr it }
+        heights = IntArray(levels) { (sizeY + (1 shl it) - 1) shr it }
+        pixels = Array(levels) { IntArray(widths[it] * heights[it]) }
+        bitmaps = Array(levels) {
+            Bitmap.createBitmap(widths[it], heights[it], Bitmap.Config.ARGB_8888)
+        }
+    }
+
+    /**
+     * @return the most detailed level of which a pixel covers at least a screen pixel,
+     * at the given scale of level 0
+     */
+    fun levelFor(scale: Float): Int {
+        var level = 0
+        while (level + 1 < levels && scale * (1 shl level) < 1f) {
+            level++
+        }
+        return level
+    }
+
+    fun bitmap(level: Int): Bitmap = bitmaps[level]
+
+    /**
+     * Set the color of a cell and of the pixels covering it in the other levels.
+     */
+    fun set(x: Int, y: Int, color: Int) {
+        pixels[0][y * widths[0] + x] = color
+        var px = x
+        var py = y
+        for (level in 1 until levels) {
+            px = px shr 1
+            py = py shr 1
+            pixels[level][py * widths[level] + px] = average(level - 1, px * 2, py * 2)
+        }
+    }
+
+    /**
+     * Set the colors of all cells, then compute each level once.
+     */
+    fun setAll(colors: IntArray) {
+        colors.copyInto(pixels[0])
+        for (level in 1 until levels) {
+            val width = widths[level]
+            for (py in 0 until heights[level]) {
+                for (px in 0 until width) {
+                    pixels[level][py * width + px] = average(level - 1, px * 2, py * 2)
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy the pixels of a level within the given bounds, in pixels of that level, to
+     * its bitmap.
+     */
+    fun upload(level: Int, bounds: Rect) {
+        if (bounds.isEmpty) {
+            return
+        }
+        val width = widths[level]
+        bitmaps[level].setPixels(
+            pixels[level], bounds.top * width + bounds.left, width,
+            bounds.left, bounds.top, bounds.width(), bounds.height()
+        )
+    }
+
+    /* Average per channel of the up to four pixels of a level from (x, y) */
+    private fun average(level: Int, x: Int, y: Int): Int {
+        val width = widths[level]
+        val height = heights[level]
+        val source = pixels[level]
+        var a = 0
+        var r = 0
+        var g = 0
+        var b = 0
+        var count = 0
+        for (sy in y until minOf(y + 2, height)) {
+            for (sx in x until minOf(x + 2, width)) {
+                val color = source[sy * width + sx]
+                a += color ushr 24
+                r += color shr 16 and 0xff
+                g += color shr 8 and 0xff
+                b += color and 0xff
+                count++
+            }
+        }
+        return (a / count) shl 24 or ((r / count) shl 16) or ((g / count) shl 8) or (b / count)
+    }
+}
@@ -0,0 +1,23 @@
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+dependencies {
+    jmh(project(":core"))
+}
+
+jmh {
+    jmhVersion = libs.versions.jmh
+    fork = 2
+    warmupIterations = 3
+    warmup = "2s"
+    iterations = 10
+    timeOnIteration = "2s"
+    resultFormat = "JSON"
+}
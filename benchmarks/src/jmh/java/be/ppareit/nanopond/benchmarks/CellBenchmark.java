@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Pieter Pareit - initial API and implementation
+ ******************************************************************************/
+
+package be.ppareit.nanopond.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import be.ppareit.nanopond.core.Cell;
+import be.ppareit.nanopond.core.NanoPond;
+
+import static be.ppareit.nanopond.core.NanoPond.POND_SIZE_X;
+import static be.ppareit.nanopond.core.NanoPond.POND_SIZE_Y;
+
+/**
+ * Cost of the cell operations used by the user interface.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CellBenchmark {
+
+    private NanoPond nanoPond;
+    private Cell cell;
+    private Cell randomCell;
+    private String hexa;
+    private int x = 0;
+    private int y = 0;
+
+    @Setup
+    public void setUp() {
+        nanoPond = Ponds.create(Ponds.State.EVOLVED, NanoPond.GenomeLayout.BYTES);
+        /* a genome that uses every instruction and ends where a real genome would */
+        hexa = "0123456789abcde".repeat(4) + "ff";
+        cell = nanoPond.getCell(10, 10);
+        cell.setGenome(hexa);
+        randomCell = nanoPond.getCell(20, 20);
+    }
+
+    @Benchmark
+    public void setRandomGenome() {
+        randomCell.setRandomGenome();
+    }
+
+    @Benchmark
+    public String getHexa() {
+        return cell.getHexa();
+    }
+
+    @Benchmark
+    public void setGenome() {
+        cell.setGenome(hexa);
+    }
+
+    @Benchmark
+    public Cell getNeighbor() {
+        /* walk over the pond, so the edges are visited too */
+        if (++x == POND_SIZE_X) {
+            x = 0;
+            if (++y == POND_SIZE_Y) {
+                y = 0;
+            }
+        }
+        return nanoPond.getNeighbor(x, y, NanoPond.Direction.LEFT);
+    }
+}
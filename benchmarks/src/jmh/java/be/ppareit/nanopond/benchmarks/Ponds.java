@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Pieter Pareit - initial API and implementation
+ ******************************************************************************/
+
+package be.ppareit.nanopond.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+
+import be.ppareit.nanopond.core.Cell;
+import be.ppareit.nanopond.core.Checkpoint;
+import be.ppareit.nanopond.core.NanoPond;
+import be.ppareit.nanopond.core.Xoroshiro128PlusPlus;
+import be.ppareit.nanopond.core.YieldPolicy;
+
+import static be.ppareit.nanopond.core.NanoPond.POND_SIZE_X;
+import static be.ppareit.nanopond.core.NanoPond.POND_SIZE_Y;
+
+/**
+ * Ponds in a known state to benchmark on. All ponds use a fixed seed, so every run
+ * starts from the same pond. Public for the code that JMH generates.
+ */
+public final class Ponds {
+
+    static final long SEED = 42;
+
+    /* Steps after which the pond with SEED has replicators of a few hundred generations */
+    static final long EVOLVE_STEPS = 10_000_000;
+
+    public enum State {
+        /* A new pond, all cells are empty */
+        EMPTY,
+        /* Every cell has a random genome and energy */
+        RANDOM,
+        /* A pond that ran for EVOLVE_STEPS steps */
+        EVOLVED
+    }
+
+    private Ponds() {
+    }
+
+    public static NanoPond create(State state, NanoPond.GenomeLayout layout) {
+        NanoPond nanoPond = new NanoPond(layout, new Xoroshiro128PlusPlus(SEED));
+        nanoPond.setYieldPolicy(YieldPolicy.NONE);
+        switch (state) {
+            case EMPTY:
+                break;
+            case RANDOM:
+                for (int y = 0; y < POND_SIZE_Y; y++) {
+                    for (int x = 0; x < POND_SIZE_X; x++) {
+                        Cell cell = nanoPond.getCell(x, y);
+                        cell.setRandomGenome();
+                        cell.setEnergy(NanoPond.INFLOW_RATE_BASE);
+                    }
+                }
+                break;
+            case EVOLVED:
+                nanoPond.stepBatch(EVOLVE_STEPS);
+                break;
+        }
+        return nanoPond;
+    }
+
+    /**
+     * @return a checkpoint of the pond, to bring it back in the same state with
+     * {@link #restore}
+     */
+    public static byte[] checkpoint(NanoPond nanoPond) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            Checkpoint.save(nanoPond, Channels.newChannel(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static void restore(NanoPond nanoPond, byte[] checkpoint) {
+        try {
+            Checkpoint.restore(nanoPond,
+                    Channels.newChannel(new ByteArrayInputStream(checkpoint)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
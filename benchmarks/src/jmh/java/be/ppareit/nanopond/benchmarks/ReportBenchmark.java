@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Pieter Pareit - initial API and implementation
+ ******************************************************************************/
+
+package be.ppareit.nanopond.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import be.ppareit.nanopond.core.NanoPond;
+
+/**
+ * Cost of asking a report from an evolved pond.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ReportBenchmark {
+
+    private NanoPond nanoPond;
+    private NanoPond.Subscription subscription;
+
+    @Setup
+    public void setUp() {
+        nanoPond = Ponds.create(Ponds.State.EVOLVED, NanoPond.GenomeLayout.BYTES);
+        subscription = nanoPond.subscribe();
+    }
+
+    @Benchmark
+    public NanoPond.Report getReport() {
+        return nanoPond.getReport();
+    }
+
+    @Benchmark
+    public NanoPond.Report poll() {
+        return subscription.poll();
+    }
+}
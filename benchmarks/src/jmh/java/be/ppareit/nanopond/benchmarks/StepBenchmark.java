@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Pieter Pareit - initial API and implementation
+ ******************************************************************************/
+
+package be.ppareit.nanopond.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import be.ppareit.nanopond.core.NanoPond;
+
+/**
+ * Throughput of the virtual machine, in steps per second.
+ * <p>
+ * Every invocation executes the same batch of steps from the same pond: the pond is
+ * restored from a checkpoint before each batch, so an empty pond stays nearly empty and
+ * the evolved pond does not evolve further while it is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class StepBenchmark {
+
+    /* Steps per invocation, long enough that restoring the pond is not timed in it */
+    static final int BATCH = 100_000;
+
+    @Param({"EMPTY", "RANDOM", "EVOLVED"})
+    Ponds.State state;
+
+    @Param({"BYTES", "PACKED"})
+    NanoPond.GenomeLayout layout;
+
+    private NanoPond nanoPond;
+    private byte[] checkpoint;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        nanoPond = Ponds.create(state, layout);
+        checkpoint = Ponds.checkpoint(nanoPond);
+    }
+
+    @Setup(Level.Invocation)
+    public void restore() {
+        Ponds.restore(nanoPond, checkpoint);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void stepBatch() {
+        nanoPond.stepBatch(BATCH);
+    }
+}
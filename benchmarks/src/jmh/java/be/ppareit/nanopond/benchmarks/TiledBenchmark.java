@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Pieter Pareit - initial API and implementation
+ ******************************************************************************/
+
+package be.ppareit.nanopond.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+import be.ppareit.nanopond.core.NanoPond;
+
+/**
+ * Throughput of a pond running on its own threads, in steps per second, to see how it
+ * scales with the number of threads.
+ * <p>
+ * The pond runs during the whole iteration. Every invocation sleeps a while and counts
+ * the steps the pond took meanwhile, so starting and stopping the threads is not
+ * measured. One thread runs the pond like run() does, without tiles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TiledBenchmark {
+
+    private static final long POLL_MILLIS = 10;
+
+    @Param({"1", "2", "4", "8"})
+    int threads;
+
+    @Param({"EVOLVED"})
+    Ponds.State state;
+
+    private NanoPond nanoPond;
+    private NanoPond.Subscription subscription;
+    private long year;
+
+    /**
+     * Steps counted in an iteration, reported per second by JMH.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Steps {
+        public long steps;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            steps = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        nanoPond = Ponds.create(state, NanoPond.GenomeLayout.PACKED);
+        subscription = nanoPond.subscribe();
+    }
+
+    @Setup(Level.Iteration)
+    public void start() {
+        year = subscription.poll().year;
+        nanoPond.run(threads);
+    }
+
+    @TearDown(Level.Iteration)
+    public void stop() {
+        nanoPond.pauze();
+    }
+
+    @Benchmark
+    public void run(Steps counter) throws InterruptedException {
+        Thread.sleep(POLL_MILLIS);
+        long now = subscription.poll().year;
+        counter.steps += now - year;
+        year = now;
+    }
+}
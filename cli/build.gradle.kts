@@ -0,0 +1,17 @@
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+dependencies {
+    implementation(project(":core"))
+}
+
+application {
+    mainClass = "be.ppareit.nanopond.cli.NanoPondCli"
+    applicationName = "nanopond"
+}
@@ -0,0 +1,282 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Pieter Pareit - initial API and implementation
+ ******************************************************************************/
+
+package be.ppareit.nanopond.cli;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+
+import be.ppareit.nanopond.core.HotGenomes;
+import be.ppareit.nanopond.core.NanoPond;
+import be.ppareit.nanopond.core.PopulationDump;
+import be.ppareit.nanopond.core.Xoroshiro128PlusPlus;
+import be.ppareit.nanopond.core.YieldPolicy;
+
+/**
+ * Runs a pond without user interface, like the original C program.
+ * <p>
+ * Every REPORT_FREQUENCY clock ticks a line of comma separated output is printed with
+ * the year, total energy, active cells, viable replicators, maximum generation and the
+ * replaced, killed and shared viable cells since the previous line. Messages go to
+ * standard error, so the output can be used as csv.
+ */
+public final class NanoPondCli {
+
+    private static final String USAGE = ""
+            + "Usage: nanopond [options]\n"
+            + "  --ticks N        run N steps and stop, like STOP_AT\n"
+            + "  --seconds S      stop after S seconds\n"
+            + "  --seed N         seed of the random generator, default from the time\n"
+            + "  --size WxH       size of the pond, default "
+            + NanoPond.POND_SIZE_X + "x" + NanoPond.POND_SIZE_Y + "\n"
+            + "  --threads N      number of threads, default 1\n"
+            + "  --report N       clock ticks between reports, default "
+            + NanoPond.REPORT_FREQUENCY + "\n"
+            + "  --layout L       genome layout, BYTES or PACKED\n"
+            + "  --mutations M    mutation schedule, PER_INSTRUCTION or GEOMETRIC\n"
+            + "  --dump N         dump viable cells every N clock ticks, like DUMP_FREQUENCY\n"
+            + "  --dump-dir D     directory for the dumps, default the working directory\n"
+            + "  --hash N         print a hash of the pond every N clock ticks, one thread only,\n"
+            + "                   every hash scans the whole pond\n"
+            + "With more than one thread the pond runs in phases, so it can stop and report\n"
+            + "a phase after the requested clock value. Run with -Dnanopond.profiling=true\n"
+            + "to print the executed instructions, the cycles per execution and the genomes\n"
+            + "that ran the most cycles when the pond stops.";
+
+    /* How often the clock is looked at when running on several threads */
+    private static final long POLL_MILLIS = 10;
+
+    /* Number of genomes printed with the profile */
+    private static final int HOT_GENOMES = 10;
+
+    /* Most steps taken on one thread before the time is looked at */
+    private static final long TIME_CHECK_STEPS = 100_000;
+
+    long stopAt = Long.MAX_VALUE;
+    Duration duration = null;
+    long seed = System.nanoTime();
+    int sizeX = NanoPond.POND_SIZE_X;
+    int sizeY = NanoPond.POND_SIZE_Y;
+    int threads = 1;
+    long reportFrequency = NanoPond.REPORT_FREQUENCY;
+    NanoPond.GenomeLayout layout = NanoPond.GenomeLayout.BYTES;
+    NanoPond.MutationSchedule mutations = NanoPond.MutationSchedule.PER_INSTRUCTION;
+    long dumpFrequency = 0;
+    Path dumpDirectory = Paths.get(".");
+    long hashFrequency = 0;
+
+    public static void main(String[] args) throws InterruptedException {
+        NanoPondCli cli = new NanoPondCli();
+        try {
+            cli.parse(args);
+            cli.run();
+        } catch (IllegalArgumentException e) {
+            System.err.println("[ERROR] " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+    }
+
+    void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--help")) {
+                System.err.println(USAGE);
+                System.exit(0);
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            try {
+                switch (option) {
+                    case "--ticks":
+                        stopAt = Long.parseLong(value);
+                        break;
+                    case "--seconds":
+                        duration = Duration.ofMillis((long) (Double.parseDouble(value) * 1000));
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "--size":
+                        String[] size = value.split("x");
+                        if (size.length != 2) {
+                            throw new IllegalArgumentException("Size must be WxH: " + value);
+                        }
+                        sizeX = Integer.parseInt(size[0]);
+                        sizeY = Integer.parseInt(size[1]);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--report":
+                        reportFrequency = Long.parseLong(value);
+                        if (reportFrequency <= 0) {
+                            throw new IllegalArgumentException("Report frequency must be positive");
+                        }
+                        break;
+                    case "--layout":
+                        layout = NanoPond.GenomeLayout.valueOf(value);
+                        break;
+                    case "--mutations":
+                        mutations = NanoPond.MutationSchedule.valueOf(value);
+                        break;
+                    case "--dump":
+                        dumpFrequency = Long.parseLong(value);
+                        if (dumpFrequency <= 0) {
+                            throw new IllegalArgumentException("Dump frequency must be positive");
+                        }
+                        break;
+                    case "--dump-dir":
+                        dumpDirectory = Paths.get(value);
+                        break;
+                    case "--hash":
+                        hashFrequency = Long.parseLong(value);
+                        if (hashFrequency <= 0) {
+                            throw new IllegalArgumentException("Hash frequency must be positive");
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number for " + option + ": " + value);
+            }
+        }
+        if (hashFrequency > 0 && threads > 1) {
+            throw new IllegalArgumentException("Hashes are only reproducible on one thread");
+        }
+    }
+
+    void run() throws InterruptedException {
+        NanoPond nanoPond = new NanoPond(sizeX, sizeY, layout, new Xoroshiro128PlusPlus(seed));
+        nanoPond.setMutationSchedule(mutations);
+        nanoPond.setYieldPolicy(YieldPolicy.NONE);
+        NanoPond.Subscription subscription = nanoPond.subscribe();
+        NanoPond.Subscription profiling = nanoPond.subscribe();
+        PopulationDump dump = null;
+        if (dumpFrequency > 0) {
+            dump = new PopulationDump(dumpDirectory, dumpFrequency);
+            nanoPond.setPopulationDump(dump);
+        }
+        System.err.println("[INFO] Pond of " + sizeX + "x" + sizeY + " with seed " + seed
+                + " on " + threads + " thread(s)");
+
+        long start = System.nanoTime();
+        long end = duration == null ? Long.MAX_VALUE : start + duration.toNanos();
+        /* The clock starts at -1, after n steps it is at n - 1 */
+        long steps = 0;
+        long nextReport = reportFrequency;
+        long nextHash = hashFrequency > 0 ? hashFrequency : Long.MAX_VALUE;
+        if (threads <= 1) {
+            while (steps < stopAt && System.nanoTime() - end < 0) {
+                long batch = Math.min(Math.min(Math.min(nextReport, nextHash), stopAt) - steps,
+                        TIME_CHECK_STEPS);
+                nanoPond.stepBatch(batch);
+                steps += batch;
+                if (steps == nextReport) {
+                    printReport(subscription.poll());
+                    nextReport += reportFrequency;
+                }
+                if (steps == nextHash) {
+                    System.err.printf("[HASH] %d %016x%n", steps, nanoPond.getStateHash());
+                    nextHash += hashFrequency;
+                }
+            }
+        } else {
+            nanoPond.run(threads);
+            while (steps < stopAt && System.nanoTime() - end < 0 && !nanoPond.hasFailed()) {
+                Thread.sleep(POLL_MILLIS);
+                /* Only poll for a line, a poll ends the counts since the previous line */
+                steps = nanoPond.getClock() + 1;
+                if (steps >= nextReport) {
+                    printReport(subscription.poll());
+                    nextReport = (steps / reportFrequency + 1) * reportFrequency;
+                }
+            }
+            try {
+                nanoPond.pauze();
+            } catch (IllegalStateException e) {
+                System.err.println("[ERROR] " + e.getMessage());
+                e.getCause().printStackTrace();
+                System.exit(2);
+            }
+            steps = nanoPond.getClock() + 1;
+        }
+        if (steps >= stopAt) {
+            System.err.println("[QUIT] STOP_AT clock value reached");
+        }
+        if (dump != null) {
+            /* Like the C program, the pond is dumped one last time when it stops */
+            dump.take(nanoPond);
+            dump.close();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("[INFO] %d steps in %.3f s, %.0f steps/s%n", steps, seconds,
+                steps / seconds);
+        if (NanoPond.PROFILING) {
+            NanoPond.Report report = profiling.poll();
+            printProfile(nanoPond, report.profile);
+            printExecutionLengths(report.executionLengths);
+            printHotGenomes(nanoPond.getHotGenomes());
+        }
+    }
+
+    private static void printProfile(NanoPond nanoPond, NanoPond.Profile profile) {
+        System.err.printf("[PROFILE] %d cell executions, %.1f instructions per execution%n",
+                profile.cellExecutions, profile.getInstructionsPerExecution());
+        for (int i = 0; i < 16; i++) {
+            System.err.printf("[PROFILE] %-6s %5.1f%% of instructions, %d energy%n",
+                    nanoPond.getInstructionName(i), 100 * profile.getShare(i),
+                    profile.energySpent[i]);
+        }
+    }
+
+    private static void printExecutionLengths(long[] executionLengths) {
+        for (int b = 0; b < executionLengths.length; b++) {
+            if (executionLengths[b] > 0) {
+                long from = b == 0 ? 0 : 1L << (b - 1);
+                long to = b == 0 ? 0 : (1L << b) - 1;
+                System.err.printf("[PROFILE] %d-%d cycles: %d executions%n", from, to,
+                        executionLengths[b]);
+            }
+        }
+    }
+
+    private static void printHotGenomes(List<HotGenomes.HotGenome> hotGenomes) {
+        for (HotGenomes.HotGenome hot : hotGenomes.subList(0,
+                Math.min(HOT_GENOMES, hotGenomes.size()))) {
+            StringBuilder genome = new StringBuilder();
+            for (byte instruction : hot.genome) {
+                genome.append(Character.forDigit(instruction, 16));
+            }
+            System.err.printf("[PROFILE] %016x %d cycles %s%n", hot.hash, hot.cycles, genome);
+        }
+    }
+
+    private static void printReport(NanoPond.Report report) {
+        System.out.println((report.year + 1) + "," + report.energy + "," + report.activeCells
+                + "," + report.viableReplicators + "," + report.maxGeneration + ","
+                + report.replaced + "," + report.kills + "," + report.shares);
+    }
+}
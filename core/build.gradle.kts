@@ -0,0 +1,30 @@
+plugins {
+    `java-library`
+    alias(libs.plugins.kotlin.jvm)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+kotlin {
+    jvmToolchain(17)
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
+
+// the tests again, with the counting that is only compiled in when profiling
+val profiledTest by tasks.registering(Test::class) {
+    description = "Runs the tests with -Dnanopond.profiling=true."
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    systemProperty("nanopond.profiling", "true")
+}
+
+tasks.check {
+    dependsOn(profiledTest)
+}
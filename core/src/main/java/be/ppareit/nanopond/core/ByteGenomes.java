@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Pieter Pareit - initial API and implementation
+ ******************************************************************************/
+
+package be.ppareit.nanopond.core;
+
+import java.util.Arrays;
+
+import static be.ppareit.nanopond.core.NanoPond.POND_DEPTH;
+
+/**
+ * Genomes with one byte per instruction, all genomes after each other in one array.
+ */
+final class ByteGenomes extends Genomes {
+
+    final byte[] bytes;
+
+    ByteGenomes(int cells) {
+        bytes = new byte[cells * POND_DEPTH];
+        Arrays.fill(bytes, (byte) 0xf); /* STOP instruction */
+    }
+
+    @Override
+    int get(int cell, int i) {
+        return bytes[cell * POND_DEPTH + i];
+    }
+
+    @Override
+    void set(int cell, int i, int instruction) {
+        bytes[cell * POND_DEPTH + i] = (byte) instruction;
+    }
+
+    @Override
+    void fill(int cell, int instruction) {
+        Arrays.fill(bytes, cell * POND_DEPTH, (cell + 1) * POND_DEPTH, (byte) instruction);
+    }
+
+    @Override
+    void copy(Genomes src, int srcCell, int srcPos, int dstCell, int dstPos, int length) {
+        System.arraycopy(((ByteGenomes) src).bytes, srcCell * POND_DEPTH + srcPos,
+                bytes, dstCell * POND_DEPTH + dstPos, length);
+    }
+
+    @Override
+    void pack(int cell, long[] words) {
+        int base = cell * POND_DEPTH;
+        for (int w = 0; w < POND_DEPTH / 16; w++) {
+            long word = 0;
+            for (int i = 15; i >= 0; i--) {
+                word = word << 4 | (bytes[base + w * 16 + i] & 0xf);
+            }
+            words[w] = word;
+        }
+    }
+
+    @Override
+    Genomes newBuffer() {
+        return new ByteGenomes(1);
+    }
+}
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Pieter Pareit - initial API and implementation
+ ******************************************************************************/
+
+package be.ppareit.nanopond.core;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static be.ppareit.nanopond.core.NanoPond.POND_DEPTH;
+
+/**
+ * View on a single cell of a pond. The cell itself lives in the {@link PondStorage} of
+ * the pond, so changes through a view are changes to the pond.
+ */
+public class Cell {
+
+    private final PondStorage storage;
+    private final int index;
+
+    /**
+     * Create a cell that is not part of a pond.
+     */
+    public Cell() {
+        this(new PondStorage(1, 1, NanoPond.GenomeLayout.BYTES), 0);
+    }
+
+    Cell(PondStorage storage, int index) {
+        this.storage = storage;
+        this.index = index;
+    }
+
+    public long getGeneration() {
+        return storage.generation[index];
+    }
+
+    public void setGeneration(long generation) {
+        int energy = storage.energy[index];
+        storage.statistics.update(storage.generation[index], energy, generation, energy);
+        storage.generation[index] = generation;
+        storage.changes.mark(index);
+    }
+
+    public long getID() {
+        return storage.id[index];
+    }
+
+    public void setID(long id) {
+        storage.id[index] = id;
+    }
+
+    public long getParentID() {
+        return storage.parentId[index];
+    }
+
+    public void setParentID(long parentID) {
+        storage.parentId[index] = parentID;
+    }
+
+    /**
+     * Negative value if this was created by seeding a gnome into the world.<p>
+     * Positive if this was created random by running the world.
+     */
+    public long getLineage() {
+        return storage.lineage[index];
+    }
+
+    public void setLineage(long lineage) {
+        storage.lineage[index] = lineage;
+        storage.color[index] = LineageColors.forLineage(lineage);
+        storage.changes.mark(index);
+    }
+
+    /**
+     * @return color of the lineage as ARGB, see {@link LineageColors}
+     */
+    public int getColor() {
+        return storage.color[index];
+    }
+
+    public int getEnergy() {
+        return storage.energy[index];
+    }
+
+    public void setEnergy(int energy) {
+        long generation = storage.generation[index];
+        storage.statistics.update(generation, storage.energy[index], generation, energy);
+        storage.energy[index] = energy;
+        storage.changes.mark(index);
+    }
+
+    /**
+     * @return a copy of the genome of the cell
+     */
+    public byte[] getGenome() {
+        byte[] genome = new byte[POND_DEPTH];
+        storage.genomes.read(index, genome);
+        return genome;
+    }
+
+    public byte getInstruction(int i) {
+        return (byte) storage.genomes.get(index, i);
+    }
+
+    /**
+     * Fill genome of the cell with random instruction. This is meant for editing cells
+     * from outside the simulation, so it does not use the random source of the pond.
+     */
+    public void setRandomGenome() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < POND_DEPTH; i++) {
+            storage.genomes.set(index, i, random.nextInt(16));
+        }
+    }
+
+    public String getHexa() {
+        StringBuilder out = new StringBuilder();
+        for (byte aGenome : getGenome()) {
+            out.append(Integer.toHexString(aGenome));
+        }
+        return out.substring(0, out.indexOf("ff") + 1);
+    }
+
+    /**
+     * Replace the genome of the cell with a copy of the given instructions.
+     */
+    public void setGenome(byte[] genome) {
+        storage.genomes.write(index, genome);
+    }
+
+    /**
+     * Replace the genome of the cell with instructions given as hexadecimal digits, the
+     * rest of the genome is filled with STOP.
+     *
+     * @throws IllegalArgumentException if there are more than POND_DEPTH instructions
+     */
+    public void setGenome(String hex) {
+        if (hex.length() > POND_DEPTH) {
+            throw new IllegalArgumentException("Genome of " + hex.length()
+                    + " instructions does not fit in " + POND_DEPTH);
+        }
+        storage.genomes.fill(index, 0xf); /* STOP instruction */
+        for (int i = 0; i < hex.length(); ++i) {
+            char ch = hex.charAt(i);
+            if ('0' <= ch && ch <= '9') {
+                storage.genomes.set(index, i, ch - '0');
+            } else if ('a' <= ch && ch <= 'f') {
+                storage.genomes.set(index, i, ch - 'a' + 10);
+            } else if ('A' <= ch && ch <= 'F') {
+                storage.genomes.set(index, i, ch - 'A' + 10);
+            } else {
+                // This parse error should be logged from an Android-safe caller.
+                setRandomGenome();
+            }
+        }
+    }
+}
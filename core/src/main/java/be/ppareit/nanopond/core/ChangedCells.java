@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Pieter Pareit - initial API and implementation
+ ******************************************************************************/
+
+package be.ppareit.nanopond.core;
+
+import java.util.Arrays;
+
+/**
+ * The cells that may look different since the last frame was published, so a frame
+ * and a view only have to update those, see {@link RenderState}.
+ * <p>
+ * A view only shows viable replicators, cells with energy and a generation above 2, in
+ * the color of their lineage. A cell is marked when it becomes or stops being viable,
+ * or when a viable cell gets a new lineage. Executing a cell changes its energy every
+ * time, but that only rarely changes what is shown.
+ * <p>
+ * There is a flag per cell instead of a bit, so worker threads marking cells next to
+ * each other never write the same element.
+ */
+final class ChangedCells {
+
+    private final byte[] changed;
+
+    ChangedCells(int cells) {
+        changed = new byte[cells];
+        markAll();
+    }
+
+    static boolean isViable(long generation, int energy) {
+        return generation > 2 && energy > 0;
+    }
+
+    void mark(int index) {
+        changed[index] = 1;
+    }
+
+    void markAll() {
+        Arrays.fill(changed, (byte) 1);
+    }
+
+    /**
+     * Write the indices of the marked cells in order, and clear the marks.
+     *
+     * @return number of indices written
+     */
+    int poll(int[] indices) {
+        if (indices.length < changed.length) {
+            throw new IllegalArgumentException("Need room for " + changed.length + " indices");
+        }
+        int count = 0;
+        for (int i = 0; i < changed.length; i++) {
+            if (changed[i] != 0) {
+                changed[i] = 0;
+                indices[count++] = i;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Pieter Pareit - initial API and implementation
+ ******************************************************************************/
+
+package be.ppareit.nanopond.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import static be.ppareit.nanopond.core.NanoPond.POND_DEPTH;
+
+/**
+ * Saves the complete state of a pond in a compact binary form, and restores it, so a
+ * pond continues exactly where it was saved.
+ * <p>
+ * A checkpoint is big endian and starts with a header of six ints: the magic number
+ * "NPND", the format version, the width and height of the pond, POND_DEPTH and the
+ * number of longs in the state of the random source. Then follow the clock, the cell id
+ * counter, the seeding id, the mutation schedule, the state of the virtual machine and
+ * of the random source. Last are the cells, see {@link PondStorage#write}.
+ * <p>
+ * A pond can only be saved or restored while it is not running.
+ */
+public final class Checkpoint {
+
+    private static final int MAGIC = 0x4e504e44; /* "NPND" */
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 6 * 4;
+
+    /* clock, cell id counter, seeding id, mutation schedule and the virtual machine */
+    private static final int STATE_SIZE = 3 * 8 + 4 + 3 * 8;
+
+    private Checkpoint() {
+    }
+
+    /**
+     * Save a pond to a file. The checkpoint is first written next to the file and then
+     * moved in its place, so an existing checkpoint is never left half overwritten.
+     */
+    public static void save(NanoPond nanoPond, Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            save(nanoPond, channel);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static void save(NanoPond nanoPond, WritableByteChannel channel)
+            throws IOException {
+        checkStopped(nanoPond);
+        PondStorage storage = nanoPond.storage;
+        int randomStateLength = nanoPond.randomStateLength();
+        ByteBuffer buffer = ByteBuffer.allocate(
+                Math.toIntExact(size(storage.cells, randomStateLength)));
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(storage.sizeX);
+        buffer.putInt(storage.sizeY);
+        buffer.putInt(POND_DEPTH);
+        buffer.putInt(randomStateLength);
+        nanoPond.writeState(buffer);
+        storage.write(buffer);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Create a pond from a checkpoint, with the size of the saved pond. The saved pond
+     * has to use the default random source, {@link Xoroshiro128PlusPlus}.
+     */
+    public static NanoPond load(Path file, NanoPond.GenomeLayout layout) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int[] values = readHeader(buffer);
+            /* the file has to fit the header before a pond of that size is made */
+            long cells = (long) values[0] * values[1];
+            if (cells > channel.size() || channel.size() != size(cells, values[3])) {
+                throw new IOException("Checkpoint has the wrong size");
+            }
+            NanoPond nanoPond = new NanoPond(values[0], values[1], layout,
+                    new Xoroshiro128PlusPlus(0));
+            buffer.rewind();
+            restore(nanoPond, buffer);
+            return nanoPond;
+        }
+    }
+
+    /**
+     * Restore a checkpoint in a pond of the same size, with the same type of random
+     * source.
+     */
+    public static void restore(NanoPond nanoPond, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            restore(nanoPond, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static void restore(NanoPond nanoPond, ReadableByteChannel channel)
+            throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header);
+        header.flip();
+        int[] values = readHeader(header);
+        checkFits(nanoPond, values);
+        ByteBuffer buffer = ByteBuffer.allocate(
+                Math.toIntExact(size(nanoPond.storage.cells, values[3])));
+        header.rewind();
+        buffer.put(header);
+        readFully(channel, buffer);
+        buffer.flip();
+        restore(nanoPond, buffer);
+    }
+
+    private static void restore(NanoPond nanoPond, ByteBuffer buffer) throws IOException {
+        checkStopped(nanoPond);
+        int[] values = readHeader(buffer);
+        checkFits(nanoPond, values);
+        PondStorage storage = nanoPond.storage;
+        if (buffer.remaining() != size(storage.cells, values[3]) - HEADER_SIZE) {
+            throw new IOException("Checkpoint has the wrong size");
+        }
+        nanoPond.readState(buffer);
+        storage.read(buffer);
+    }
+
+    /*
+     * Read and check the header, returns the width, height, POND_DEPTH and length of the
+     * random state.
+     */
+    private static int[] readHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a NanoPond checkpoint");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unknown checkpoint version " + version);
+        }
+        int[] values = {buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt()};
+        if (values[2] != POND_DEPTH) {
+            throw new IOException("Checkpoint has genomes of " + values[2]
+                    + " instructions instead of " + POND_DEPTH);
+        }
+        if (values[0] < 2 || values[1] < 2 || values[3] < 0) {
+            throw new IOException("Damaged checkpoint header");
+        }
+        return values;
+    }
+
+    /*
+     * Check that the header is of a pond of the same size and random source.
+     */
+    private static void checkFits(NanoPond nanoPond, int[] values) {
+        PondStorage storage = nanoPond.storage;
+        if (values[0] != storage.sizeX || values[1] != storage.sizeY) {
+            throw new IllegalArgumentException("Checkpoint of a " + values[0] + "x" + values[1]
+                    + " pond can not be restored in a " + storage.sizeX + "x"
+                    + storage.sizeY + " pond");
+        }
+        if (values[3] != nanoPond.randomStateLength()) {
+            throw new IllegalArgumentException("Checkpoint has another type of random source");
+        }
+    }
+
+    private static long size(long cells, int randomStateLength) {
+        return HEADER_SIZE + STATE_SIZE + randomStateLength * 8L + PondStorage.byteSize(cells);
+    }
+
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Checkpoint ends too soon");
+            }
+        }
+    }
+
+    private static void checkStopped(NanoPond nanoPond) {
+        if (nanoPond.isRunning()) {
+            throw new IllegalStateException("Pond must be paused");
+        }
+    }
+}
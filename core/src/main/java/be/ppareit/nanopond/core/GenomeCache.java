@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Pieter Pareit - initial API and implementation
+ ******************************************************************************/
+
+package be.ppareit.nanopond.core;
+
+import static be.ppareit.nanopond.core.NanoPond.POND_DEPTH;
+
+/**
+ * Decoded genomes of replicators, so a program that runs over and over again is only
+ * decoded once instead of on every execution.
+ * <p>
+ * For every position a decoded genome knows how many times the instruction there
+ * repeats, for the instructions of which a run can be executed at once, and for a LOOP
+ * the jump to its matching REP, see {@link VirtualMachine#loopJump}. A genome is found
+ * by its packed instructions: the hash of them picks a set of a few entries, and when
+ * the genome is not among them, the least recently used entry of the set makes way.
+ * <p>
+ * Entries are never changed while in use. A machine whose genome changes while it
+ * executes, by WRITEG, XCHG or a mutation, stops using the decoded genome.
+ * Every machine has its own cache, so worker threads do not share one.
+ */
+final class GenomeCache {
+
+    private static final int SET_BITS = 6;
+    private static final int SETS = 1 << SET_BITS;
+    private static final int WAYS = 4;
+    private static final int WORDS = POND_DEPTH / 16;
+
+    /* Packed genome of each entry, and when it was used last, 0 for a free entry */
+    private final long[] genomes = new long[SETS * WAYS * WORDS];
+    private final long[] lastUse = new long[SETS * WAYS];
+    private long uses = 0;
+
+    /* Per entry and position, length of the run of the instruction there, at least 1 */
+    final byte[] runs = new byte[SETS * WAYS * POND_DEPTH];
+
+    /* Per entry and position of a LOOP, the jump to the matching REP */
+    final int[] jumps = new int[SETS * WAYS * POND_DEPTH];
+
+    private final long[] key = new long[WORDS];
+
+    /**
+     * Find the decoded genome of a cell, decoding it if it is not in the cache.
+     *
+     * @return the entry, the decoded positions start at {@code entry * POND_DEPTH}
+     */
+    int lookup(Genomes source, int cell) {
+        source.pack(cell, key);
+        long hash = Genomes.hash(key);
+        int first = (int) (hash >>> (64 - SET_BITS)) * WAYS;
+
+        int victim = first;
+        for (int entry = first; entry < first + WAYS; entry++) {
+            if (lastUse[entry] != 0 && holds(entry)) {
+                lastUse[entry] = ++uses;
+                return entry;
+            }
+            if (lastUse[entry] < lastUse[victim]) {
+                victim = entry;
+            }
+        }
+        System.arraycopy(key, 0, genomes, victim * WORDS, WORDS);
+        lastUse[victim] = ++uses;
+        decode(source, cell, victim);
+        return victim;
+    }
+
+    private boolean holds(int entry) {
+        int base = entry * WORDS;
+        for (int w = 0; w < WORDS; w++) {
+            if (genomes[base + w] != key[w]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void decode(Genomes source, int cell, int entry) {
+        int base = entry * POND_DEPTH;
+        /* Runs end at the end of the genome, from the back every run is one longer */
+        int run = 0;
+        int next = -1;
+        for (int i = POND_DEPTH - 1; i >= 0; i--) {
+            int instruction = source.get(cell, i);
+            run = instruction == next && repeats(instruction) ? run + 1 : 1;
+            runs[base + i] = (byte) run;
+            next = instruction;
+            if (instruction == 0x9) {
+                jumps[base + i] = VirtualMachine.loopJump(source, cell, i);
+            }
+        }
+    }
+
+    /**
+     * @return true if a run of the instruction can be executed at once: the moves of
+     * the pointer and register and the instructions that do the same when repeated
+     */
+    static boolean repeats(int instruction) {
+        return instruction <= 0x5 || instruction == 0x7 || instruction == 0x8;
+    }
+}
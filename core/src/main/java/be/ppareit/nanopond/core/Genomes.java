@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Pieter Pareit - initial API and implementation
+ ******************************************************************************/
+
+package be.ppareit.nanopond.core;
+
+import static be.ppareit.nanopond.core.NanoPond.POND_DEPTH;
+
+/**
+ * The genomes of a number of cells, each genome is POND_DEPTH instructions long and
+ * every instruction is a value from 0 to 15. New genomes are filled with STOP.
+ * <p>
+ * How the genomes are laid out in memory is up to the subclass, see
+ * {@link NanoPond.GenomeLayout}.
+ */
+abstract class Genomes {
+
+    static Genomes create(NanoPond.GenomeLayout layout, int cells) {
+        switch (layout) {
+            case BYTES:
+                return new ByteGenomes(cells);
+            case PACKED:
+                return new PackedGenomes(cells);
+            default:
+                throw new RuntimeException("Unknown genome layout: " + layout);
+        }
+    }
+
+    /**
+     * @return instruction {@code i} of the genome of a cell
+     */
+    abstract int get(int cell, int i);
+
+    /**
+     * Change instruction {@code i} of the genome of a cell.
+     */
+    abstract void set(int cell, int i, int instruction);
+
+    /**
+     * Fill the whole genome of a cell with one instruction.
+     */
+    abstract void fill(int cell, int instruction);
+
+    /**
+     * Copy {@code length} instructions from a genome in {@code src}, which has the same
+     * layout, into a genome of these genomes. The ranges do not wrap around.
+     */
+    abstract void copy(Genomes src, int srcCell, int srcPos, int dstCell, int dstPos,
+                       int length);
+
+    /**
+     * @return genomes with the same layout, big enough for a single genome
+     */
+    abstract Genomes newBuffer();
+
+    /**
+     * Pack the genome of a cell in POND_DEPTH / 16 longs, instruction {@code i} in bits
+     * {@code 4 * (i % 16)} of long {@code i / 16}, the same whatever the layout.
+     */
+    abstract void pack(int cell, long[] words);
+
+    /**
+     * @return a hash of a genome packed by {@link #pack}
+     */
+    static long hash(long[] words) {
+        long hash = 0;
+        for (long word : words) {
+            hash = mix(hash, word);
+        }
+        return hash;
+    }
+
+    /**
+     * @return the hash of a sequence of values, continued with one more value
+     */
+    static long mix(long hash, long value) {
+        return (hash ^ value) * 0x9e3779b97f4a7c15L;
+    }
+
+    void read(int cell, byte[] genome) {
+        for (int i = 0; i < POND_DEPTH; i++) {
+            genome[i] = (byte) get(cell, i);
+        }
+    }
+
+    void write(int cell, byte[] genome) {
+        for (int i = 0; i < POND_DEPTH; i++) {
+            set(cell, i, genome[i]);
+        }
+    }
+}
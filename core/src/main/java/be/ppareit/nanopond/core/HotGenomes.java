@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Pieter Pareit - initial API and implementation
+ ******************************************************************************/
+
+package be.ppareit.nanopond.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static be.ppareit.nanopond.core.NanoPond.POND_DEPTH;
+
+/**
+ * Samples which genomes consume the most cycles, a cycle being one instruction executed
+ * or skipped, each costing a unit of energy.
+ * <p>
+ * A virtual machine samples one execution out of SAMPLE_INTERVAL and records the genome
+ * it started with and the cycles it ran. The genomes with the most sampled cycles are
+ * kept in a table of fixed size with the space-saving algorithm: a genome that is not
+ * in a full table takes the place of the genome with the fewest cycles, and adds to its
+ * cycles. The cycles of a genome are thus never underestimated, and overestimated by at
+ * most the cycles of the genome it replaced.
+ * <p>
+ * Only one thread records in a table at a time, either the thread stepping the pond or
+ * the one collecting the tables of the worker threads. Recording takes no lock: the
+ * writer bumps a version around every change, and readers copy the table and try again
+ * when the version shows a sample came in meanwhile.
+ */
+public final class HotGenomes {
+
+    /* One execution out of this many is sampled */
+    static final int SAMPLE_INTERVAL = 64;
+
+    private static final int CAPACITY = 32;
+    private static final int WORDS = POND_DEPTH / 16;
+
+    /**
+     * A genome and the estimated cycles spent executing it.
+     */
+    public static final class HotGenome {
+        public final long hash;
+        public final byte[] genome;
+        public final long cycles;
+
+        HotGenome(long hash, byte[] genome, long cycles) {
+            this.hash = hash;
+            this.genome = genome;
+            this.cycles = cycles;
+        }
+    }
+
+    /*
+     * Version of the table, odd while the writer changes it. The entries are written with
+     * ordered stores after the version is made odd, and before it is made even again, so
+     * a reader that sees the same even version before and after copying them has a
+     * consistent copy, like a seqlock.
+     */
+    private volatile long version = 0;
+    private final AtomicLongArray genomes = new AtomicLongArray(CAPACITY * WORDS);
+    private final AtomicLongArray cycles = new AtomicLongArray(CAPACITY);
+    private volatile int size = 0;
+
+    /**
+     * Record the sampled cycles of a genome, packed by {@link Genomes#pack}.
+     */
+    void record(long[] genome, long sampledCycles) {
+        long start = version;
+        version = start + 1;
+        add(genome, 0, sampledCycles);
+        version = start + 2;
+    }
+
+    /**
+     * Record the samples of another table, and clear that one. The other table may not be
+     * recording meanwhile.
+     */
+    void collect(HotGenomes other) {
+        if (other.size == 0) {
+            return;
+        }
+        long[] genome = new long[WORDS];
+        long start = version;
+        version = start + 1;
+        for (int e = 0; e < other.size; e++) {
+            for (int w = 0; w < WORDS; w++) {
+                genome[w] = other.genomes.get(e * WORDS + w);
+            }
+            add(genome, 0, other.cycles.get(e));
+        }
+        version = start + 2;
+        other.size = 0;
+    }
+
+    private void add(long[] genome, int offset, long sampledCycles) {
+        int fewest = 0;
+        for (int e = 0; e < size; e++) {
+            if (holds(e, genome, offset)) {
+                cycles.lazySet(e, cycles.get(e) + sampledCycles);
+                return;
+            }
+            if (cycles.get(e) < cycles.get(fewest)) {
+                fewest = e;
+            }
+        }
+        /* A genome that replaces another inherits its cycles */
+        int entry = fewest;
+        long inherited = cycles.get(fewest);
+        if (size < CAPACITY) {
+            entry = size;
+            inherited = 0;
+        }
+        for (int w = 0; w < WORDS; w++) {
+            genomes.lazySet(entry * WORDS + w, genome[offset + w]);
+        }
+        cycles.lazySet(entry, inherited + sampledCycles);
+        if (entry == size) {
+            size = entry + 1;
+        }
+    }
+
+    private boolean holds(int entry, long[] genome, int offset) {
+        for (int w = 0; w < WORDS; w++) {
+            if (genomes.get(entry * WORDS + w) != genome[offset + w]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the sampled genomes, most cycles first, with their cycles estimated from
+     * the samples
+     */
+    public List<HotGenome> get() {
+        long[] genomesCopy = new long[CAPACITY * WORDS];
+        long[] cyclesCopy = new long[CAPACITY];
+        int count;
+        while (true) {
+            long start = version;
+            if ((start & 1) != 0) {
+                Thread.yield();
+                continue;
+            }
+            count = size;
+            for (int i = 0; i < count * WORDS; i++) {
+                genomesCopy[i] = genomes.get(i);
+            }
+            for (int e = 0; e < count; e++) {
+                cyclesCopy[e] = cycles.get(e);
+            }
+            if (version == start) {
+                break;
+            }
+        }
+
+        List<HotGenome> hot = new ArrayList<>(count);
+        long[] packed = new long[WORDS];
+        for (int e = 0; e < count; e++) {
+            System.arraycopy(genomesCopy, e * WORDS, packed, 0, WORDS);
+            byte[] genome = new byte[POND_DEPTH];
+            for (int i = 0; i < POND_DEPTH; i++) {
+                genome[i] = (byte) (packed[i / 16] >>> (4 * (i % 16)) & 0xf);
+            }
+            hot.add(new HotGenome(Genomes.hash(packed), genome,
+                    cyclesCopy[e] * SAMPLE_INTERVAL));
+        }
+        hot.sort((a, b) -> Long.compare(b.cycles, a.cycles));
+        return hot;
+    }
+}
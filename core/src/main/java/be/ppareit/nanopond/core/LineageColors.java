@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Pieter Pareit - initial API and implementation
+ ******************************************************************************/
+
+package be.ppareit.nanopond.core;
+
+/**
+ * The color in which a view shows the cells of a lineage, as ARGB.
+ * <p>
+ * Lineages of seeded cells, the negative ones, take turns in a few bright colors. Other
+ * lineages get their color from the lowest bytes of the lineage. The pond keeps the
+ * color of every cell next to its lineage, so it is only computed when a lineage
+ * changes and never while drawing.
+ */
+public final class LineageColors {
+
+    private static final int[] ARTIFICIAL = {
+            0xffffffff,
+            0xff00ff00,
+            0xff00ffff,
+            0xffffff00,
+            0xffff0000,
+            0xffff00ff
+    };
+
+    private LineageColors() {
+    }
+
+    public static int forLineage(long lineage) {
+        if (lineage < 0) {
+            int index = Math.floorMod((int) Math.abs(lineage), ARTIFICIAL.length);
+            return ARTIFICIAL[index];
+        }
+
+        int lsp = (int) lineage;
+        int red = cap(lsp % 256);
+        int green = cap(lsp % (256 * 256) / 256);
+        int blue = cap(lsp % (256 * 256 * 256) / 256 / 256);
+        return 0xff << 24 | red << 16 | green << 8 | blue;
+    }
+
+    private static int cap(int i) {
+        return Math.max(0, Math.min(i, 255));
+    }
+}
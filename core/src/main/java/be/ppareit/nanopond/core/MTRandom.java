@@ -81,7 +81,7 @@ import java.util.Random;
  * -->
  * 
  */
-public class MTRandom extends Random {
+public class MTRandom extends Random implements RandomSource {
 
     /**
      * Auto-generated serial version UID.  Note that MTRandom does NOT
@@ -350,6 +350,43 @@ public class MTRandom extends Random {
         return (y >>> (32-bits));
     }
 
+    /**
+     * Create a new generator, seeded from the next value of this one.
+     */
+    @Override
+    public RandomSource split() {
+        return new MTRandom(nextLong());
+    }
+
+    /**
+     * The state is the N words of the generator, two in every long, followed by the
+     * position in those words.
+     */
+    @Override
+    public synchronized long[] getState() {
+        long[] state = new long[N / 2 + 1];
+        for (int i = 0; i < N / 2; i++) {
+            state[i] = ((long) mt[2 * i] << 32) | (mt[2 * i + 1] & 0xffffffffL);
+        }
+        state[N / 2] = mti;
+        return state;
+    }
+
+    @Override
+    public synchronized void setState(long[] state) {
+        if (state.length != N / 2 + 1 || state[N / 2] < 0 || state[N / 2] > N) {
+            throw new IllegalArgumentException("Not a Mersenne Twister state");
+        }
+        if (mt == null) {
+            mt = new int[N];
+        }
+        for (int i = 0; i < N / 2; i++) {
+            mt[2 * i] = (int) (state[i] >>> 32);
+            mt[2 * i + 1] = (int) state[i];
+        }
+        mti = (int) state[N / 2];
+    }
+
     // This is a fairly obscure little code section to pack a
     // byte[] into an int[] in little endian ordering.  
 
@@ -0,0 +1,949 @@
+/*
+ * NanoPond.java
+ *
+ * Copyright (C) 2007 Thomas Abeel
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * This program was based on the Nanopond 1.9 C program by Adam Ierymenko
+ * http://www.greythumb.org/wiki/Nanopond
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110 USA
+ *
+ */
+package be.ppareit.nanopond.core;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class NanoPond {
+
+    /* All available instructions */
+    private final String[] names = {"ZERO", "FWD", "BACK", "INC", "DEC", "READG", "WRITEG", "READB",
+            "WRITEB", "LOOP", "REP", "TURN", "XCHG", "KILL", "SHARE", "STOP"};
+    /*
+     * Frequency of comprehensive reports-- lower values will provide more info while
+     * slowing down the simulation. Higher values will give less frequent updates. This is
+     * also the frequency of screen refreshes if SDL is enabled.
+     */
+    public static final int REPORT_FREQUENCY = 100000;
+    /*
+     * How frequently should random cells / energy be introduced? Making this too high
+     * makes things very chaotic. Making it too low might not introduce enough energy.
+     */
+    public static final int INFLOW_FREQUENCY = 100;
+    /* Base amount of energy to introduce per INFLOW_FREQUENCY ticks */
+    public static final int INFLOW_RATE_BASE = 4000;
+    /*
+     * A random amount of energy between 0 and this is added to INFLOW_RATE_BASE when
+     * energy is introduced. Comment this out for no variation in inflow rate.
+     */
+    public static final int INFLOW_RATE_VARIATION = 8000;
+    /* Size of a pond when none is given */
+    public static final int POND_SIZE_X = 160;
+    public static final int POND_SIZE_Y = 120;
+    /*
+     * Maximum genome size.
+     */
+    public static final int POND_DEPTH = 64;
+    /*
+     * This is the divisor that determines how much energy is taken from cells when they
+     * try to KILL a viable cell neighbor and fail. Higher numbers mean lower penalties.
+     */
+    public static final int FAILED_KILL_PENALTY = 2;
+    /*
+     * Whether the virtual machines count every instruction they execute and the energy
+     * spent on it, see Report.profile. Turned on with -Dnanopond.profiling=true, when off
+     * the counting is left out of the compiled execution loop.
+     */
+    public static final boolean PROFILING = Boolean.getBoolean("nanopond.profiling");
+    /* Buckets of Report.executionLengths, one for every bit of the number of cycles */
+    public static final int EXECUTION_LENGTH_BUCKETS = 32;
+
+    public enum Direction {
+
+        LEFT, RIGHT, UP, DOWN;
+
+        public static Direction getDirection(int i) {
+            switch (i) {
+                case 0:
+                    return LEFT;
+                case 1:
+                    return RIGHT;
+                case 2:
+                    return UP;
+                case 3:
+                    return DOWN;
+                default:
+                    throw new RuntimeException("Unknown direction requested: " + i);
+            }
+        }
+    }
+
+    /*
+     * Offsets to the neighbor in each direction, indexed by the ordinal of Direction. The
+     * virtual machine keeps its direction as this index.
+     */
+    static final int[] DIRECTION_X = {-1, 1, 0, 0};
+    static final int[] DIRECTION_Y = {0, 0, -1, 1};
+
+    /**
+     * How the genomes of the cells are stored in memory.
+     */
+    public enum GenomeLayout {
+        /* One byte per instruction */
+        BYTES,
+        /* 16 instructions packed in every long, half the memory of BYTES */
+        PACKED
+    }
+
+    /**
+     * How it is decided which instructions and copied positions mutate.
+     */
+    public enum MutationSchedule {
+        /* Draw a random number for every position, like the original program */
+        PER_INSTRUCTION,
+        /*
+         * Draw the distance to the next mutation from a geometric distribution and count
+         * it down. Same mutation rate, but only one random number per mutation.
+         */
+        GEOMETRIC
+    }
+
+    /* The pond is a 2D grid of cells, stored as a structure of arrays */
+    final PondStorage storage;
+    private Cell[] cells = null;
+    private final RandomSource rg;
+
+    /* Frames published for views */
+    private final RenderState renderState;
+
+    /**
+     * Class for keeping some running tally type statistics. The counters of the pond
+     * only go up, see {@link Subscription} for the counts between two reports.
+     */
+    static class StatCounters {
+
+        long[] instructionExecutions = new long[16];
+        long[] energySpent = new long[16];
+        /* Cell executions by their number of cycles, see Report.executionLengths */
+        long[] executionLengths = new long[EXECUTION_LENGTH_BUCKETS];
+        long cellExecutions = 0;
+        long viableCellsReplaced = 0;
+        long viableCellsKilled = 0;
+        long viableCellShares = 0;
+
+        public void reset() {
+            // instructionExecutions = new long[16];
+            for (int i = 0; i < instructionExecutions.length; ++i) {
+                instructionExecutions[i] = 0;
+                energySpent[i] = 0;
+            }
+            for (int i = 0; i < executionLengths.length; ++i) {
+                executionLengths[i] = 0;
+            }
+            cellExecutions = 0;
+            viableCellsReplaced = 0;
+            viableCellsKilled = 0;
+            viableCellShares = 0;
+        }
+
+        void add(StatCounters other) {
+            for (int i = 0; i < instructionExecutions.length; ++i) {
+                instructionExecutions[i] += other.instructionExecutions[i];
+                energySpent[i] += other.energySpent[i];
+            }
+            for (int i = 0; i < executionLengths.length; ++i) {
+                executionLengths[i] += other.executionLengths[i];
+            }
+            cellExecutions += other.cellExecutions;
+            viableCellsReplaced += other.viableCellsReplaced;
+            viableCellsKilled += other.viableCellsKilled;
+            viableCellShares += other.viableCellShares;
+        }
+    }
+
+    /* Global statistics counters, cumulative since the pond was created */
+    StatCounters statCounters = new StatCounters();
+
+    /* Genomes that ran the most cycles since the pond was created */
+    private final HotGenomes hotGenomes = new HotGenomes();
+    boolean replicatorMessage = false;
+
+    public static class Report {
+        public long year;
+        public long energy;
+        public long maxGeneration;
+        public long activeCells;
+        public long viableReplicators;
+        public long kills;
+        public long replaced;
+        public long shares;
+        public double stepsPerSecond;
+        /*
+         * Cell executions by the cycles they ran, each instruction executed or skipped
+         * being a cycle. Bucket 0 counts executions of cells without energy, bucket b
+         * those of 2^(b-1) up to 2^b - 1 cycles.
+         */
+        public final long[] executionLengths = new long[EXECUTION_LENGTH_BUCKETS];
+        /* Only when PROFILING, else null */
+        public Profile profile;
+    }
+
+    /**
+     * What the virtual machines executed between two reports.
+     */
+    public static class Profile {
+        /* Executed instructions per opcode, not counting those skipped in a false loop */
+        public final long[] instructionExecutions = new long[16];
+        /*
+         * Energy spent per opcode. The instructions skipped in a false loop are spent by
+         * the LOOP and the penalty of a failed kill by the KILL.
+         */
+        public final long[] energySpent = new long[16];
+        public long cellExecutions;
+
+        public long getInstructions() {
+            long instructions = 0;
+            for (long executions : instructionExecutions) {
+                instructions += executions;
+            }
+            return instructions;
+        }
+
+        /**
+         * @return the part of the executed instructions with this opcode, 0 when nothing
+         * was executed
+         */
+        public double getShare(int instruction) {
+            long instructions = getInstructions();
+            return instructions == 0
+                    ? 0 : (double) instructionExecutions[instruction] / instructions;
+        }
+
+        /**
+         * @return the average number of instructions executed by a cell, 0 when no cell
+         * was executed
+         */
+        public double getInstructionsPerExecution() {
+            return cellExecutions == 0 ? 0 : (double) getInstructions() / cellExecutions;
+        }
+    }
+
+    /**
+     * Gives reports to one consumer. The kills, replaced cells and shares in a report
+     * are counted since the previous report of the same subscription, so consumers do
+     * not influence each other.
+     */
+    public class Subscription {
+        /* The counters of the pond at the previous report */
+        private final StatCounters previous = new StatCounters();
+
+        private Subscription() {
+            previous.add(statCounters);
+        }
+
+        /**
+         * @return a report with the current state of the pond
+         */
+        public synchronized Report poll() {
+            Report report = createReport();
+            StatCounters total = new StatCounters();
+            total.add(statCounters);
+            report.kills = total.viableCellsKilled - previous.viableCellsKilled;
+            report.replaced = total.viableCellsReplaced - previous.viableCellsReplaced;
+            report.shares = total.viableCellShares - previous.viableCellShares;
+            for (int i = 0; i < EXECUTION_LENGTH_BUCKETS; i++) {
+                report.executionLengths[i] = total.executionLengths[i]
+                        - previous.executionLengths[i];
+            }
+            if (PROFILING) {
+                Profile profile = new Profile();
+                for (int i = 0; i < 16; i++) {
+                    profile.instructionExecutions[i] = total.instructionExecutions[i]
+                            - previous.instructionExecutions[i];
+                    profile.energySpent[i] = total.energySpent[i] - previous.energySpent[i];
+                }
+                profile.cellExecutions = total.cellExecutions - previous.cellExecutions;
+                report.profile = profile;
+            }
+            previous.reset();
+            previous.add(total);
+            return report;
+        }
+    }
+
+    /* Subscription behind getReport() */
+    private final Subscription defaultSubscription;
+
+    public String getInstructionName(int instruction) {
+        return names[instruction];
+    }
+
+    /**
+     * @return the genomes that ran the most cycles since the pond was created, estimated
+     * by sampling executions, most cycles first
+     */
+    public List<HotGenomes.HotGenome> getHotGenomes() {
+        return hotGenomes.get();
+    }
+
+    /**
+     * Subscribe to reports, the first report only counts what happened after
+     * subscribing.
+     */
+    public Subscription subscribe() {
+        return new Subscription();
+    }
+
+    /**
+     * @return a report with the kills, replaced cells and shares since the previous call,
+     * the report of a subscription made when the pond was created
+     */
+    public Report getReport() {
+        return defaultSubscription.poll();
+    }
+
+    private synchronized Report createReport() {
+        Report report = new Report();
+        report.year = clock;
+        PondStatistics statistics = storage.statistics;
+        long maxGeneration = statistics.getMaxGeneration();
+        if (maxGeneration > 2 && !replicatorMessage) {
+            replicatorMessage = true;
+            System.err.println("[EVENT] Replicators have evolved in the year " + clock);
+        }
+        if (maxGeneration <= 2 && replicatorMessage) {
+            replicatorMessage = false;
+            System.err.println("[EVENT] Replicators have gone extinct in the year "
+                    + clock);
+        }
+        report.energy = statistics.energy;
+        report.maxGeneration = maxGeneration;
+        report.activeCells = statistics.activeCells;
+        report.viableReplicators = statistics.viableReplicators;
+        report.stepsPerSecond = stepsPerSecond;
+        return report;
+    }
+
+    public int getSizeX() {
+        return storage.sizeX;
+    }
+
+    public int getSizeY() {
+        return storage.sizeY;
+    }
+
+    /**
+     * Get a view on a cell in the pond
+     *
+     * @param x X position
+     * @param y Y position
+     * @return the cell
+     */
+    public Cell getCell(int x, int y) {
+        return getCell(storage.index(x, y));
+    }
+
+    /**
+     * Get a view on a cell in the pond by its index, cells are numbered row by row.
+     * Views are only created when asked for, so a pond that is never shown never
+     * allocates them.
+     *
+     * @param index index of the cell, see {@link #getIndex(int, int)}
+     * @return the cell
+     */
+    public Cell getCell(int index) {
+        if (cells == null) {
+            cells = new Cell[storage.cells];
+        }
+        Cell cell = cells[index];
+        if (cell == null) {
+            cell = new Cell(storage, index);
+            cells[index] = cell;
+        }
+        return cell;
+    }
+
+    /**
+     * @return the frames a view reads from, published while the pond runs
+     */
+    public RenderState getRenderState() {
+        return renderState;
+    }
+
+    /**
+     * Publish a frame of the pond as it is now, only while the pond is not running. A
+     * running pond publishes frames by itself.
+     */
+    public void publishFrame() {
+        if (isRunning()) {
+            throw new IllegalStateException("Pond publishes its own frames while running");
+        }
+        renderState.publish(clock);
+    }
+
+    /**
+     * A hash of the whole state of the pond, only while the pond is not running: the
+     * clock, the cell id counters, the mutation schedule and countdown, the state of the
+     * random source and all cells. It scans all cells, so it is meant to be taken every
+     * so many ticks, not every step.
+     * <p>
+     * Ponds with the same size, mutation schedule and random seed that are stepped from
+     * a single thread go through the same states, whatever their genome layout. Hashing
+     * two runs every so many ticks shows whether and where they part, so a faster way
+     * of executing can be checked against known hashes. On several threads the order
+     * in which cells execute differs from run to run.
+     */
+    public long getStateHash() {
+        if (isRunning()) {
+            throw new IllegalStateException("Pond can not be hashed while running");
+        }
+        long hash = Genomes.mix(storage.hash(), clock);
+        hash = Genomes.mix(hash, cellIdCounter.get());
+        hash = Genomes.mix(hash, seedingID);
+        hash = Genomes.mix(hash, mutationSchedule.ordinal());
+        hash = vm.hashState(hash);
+        for (long word : rg.getState()) {
+            hash = Genomes.mix(hash, word);
+        }
+        return hash;
+    }
+
+    /* Called by the thread running the pond between batches */
+    void publishFrameIfDue() {
+        renderState.publishIfDue(clock);
+    }
+
+    /**
+     * Get a neighbor in the pond
+     *
+     * @param x   Starting X position
+     * @param y   Starting Y position
+     * @param dir Direction to get neighbor from
+     * @return neighboring cell
+     */
+    public Cell getNeighbor(int x, int y, Direction dir) {
+        return getCell(storage.neighbor(storage.index(x, y), dir.ordinal()));
+    }
+
+    /**
+     * Get a neighbor in the pond
+     *
+     * @param index Index of the starting cell
+     * @param dir   Direction to get neighbor from
+     * @return neighboring cell
+     */
+    public Cell getNeighbor(int index, Direction dir) {
+        return getCell(storage.neighbor(index, dir.ordinal()));
+    }
+
+    /**
+     * @param x X position
+     * @param y Y position
+     * @return index of the cell at the position
+     */
+    public int getIndex(int x, int y) {
+        return storage.index(x, y);
+    }
+
+    /**
+     * Get the index of a neighbor in the pond
+     *
+     * @param index Index of the starting cell
+     * @param dir   Direction to get neighbor from
+     * @return index of the neighboring cell
+     */
+    public int getNeighborIndex(int index, Direction dir) {
+        return storage.neighbor(index, dir.ordinal());
+    }
+
+    /**
+     * Constructor of the world : fill all genomes with STOP's
+     */
+    public NanoPond() {
+        this(GenomeLayout.BYTES);
+    }
+
+    /**
+     * Constructor of a world that goes through the same states every time it is stepped
+     * from a single thread with the same seed, see {@link #getStateHash()}
+     *
+     * @param seed seed of the random source
+     */
+    public NanoPond(long seed) {
+        this(GenomeLayout.BYTES, new Xoroshiro128PlusPlus(seed));
+    }
+
+    /**
+     * Constructor of the world with a chosen genome layout
+     *
+     * @param layout how the genomes are stored in memory
+     */
+    public NanoPond(GenomeLayout layout) {
+        this(layout, new Xoroshiro128PlusPlus(System.nanoTime()));
+    }
+
+    /**
+     * Constructor of the world with a chosen genome layout and random source
+     *
+     * @param layout how the genomes are stored in memory
+     * @param random source of all randomness in the pond, worker threads get a source
+     *               split from this one
+     */
+    public NanoPond(GenomeLayout layout, RandomSource random) {
+        this(POND_SIZE_X, POND_SIZE_Y, layout, random);
+    }
+
+    /**
+     * Constructor of a world with a chosen size
+     *
+     * @param sizeX  width of the pond, at least 2
+     * @param sizeY  height of the pond, at least 2
+     * @param layout how the genomes are stored in memory
+     * @param random source of all randomness in the pond, worker threads get a source
+     *               split from this one
+     */
+    public NanoPond(int sizeX, int sizeY, GenomeLayout layout, RandomSource random) {
+        if (sizeX < 2 || sizeY < 2) {
+            throw new IllegalArgumentException("Pond of " + sizeX + "x" + sizeY
+                    + " is too small, a cell can not be its own neighbor");
+        }
+        rg = random;
+        storage = new PondStorage(sizeX, sizeY, layout);
+        renderState = new RenderState(storage);
+        vm = new VirtualMachine(this, rg, statCounters, storage.statistics, hotGenomes);
+        defaultSubscription = new Subscription();
+    }
+
+    volatile boolean isRunning = false;
+
+    Thread thread = null;
+
+    TiledEngine engine = null;
+
+    /* Number of steps the run loop takes between two calls to the yield policy */
+    static final int STEP_BATCH = 1013;
+
+    private volatile YieldPolicy yieldPolicy = YieldPolicy.fixedSleep(1);
+
+    /* Steps per second achieved by the run loop, measured over about a second */
+    private volatile double stepsPerSecond = 0;
+    private long rateStart = 0;
+    private long rateSteps = 0;
+
+    public void run() {
+
+        if (thread == null && engine == null) {
+            isRunning = true;
+            resetStepRate();
+            thread = new Thread(() -> {
+                while (isRunning) {
+                    steps(STEP_BATCH);
+                    countSteps(STEP_BATCH);
+                    publishFrameIfDue();
+                    try {
+                        yieldPolicy.afterBatch(STEP_BATCH);
+                    } catch (InterruptedException e) {
+                        // ignore
+                    }
+                }
+            });
+            thread.start();
+        }
+    }
+
+    /**
+     * Execute a number of steps on the calling thread, only while the pond is not
+     * running.
+     *
+     * @param n number of steps
+     * @throws IllegalStateException if the pond is running
+     */
+    public void stepBatch(long n) {
+        if (isRunning()) {
+            throw new IllegalStateException("Pond can not step on this thread while running");
+        }
+        steps(n);
+    }
+
+    private void steps(long n) {
+        for (long i = 0; i < n; i++) {
+            singleStep();
+        }
+    }
+
+    /**
+     * Run the pond on the calling thread for some time, in batches with the yield
+     * policy applied after every batch. Only while the pond is not running.
+     *
+     * @param duration how long to run
+     * @return number of executed steps
+     * @throws IllegalStateException if the pond is running
+     */
+    public long runFor(Duration duration) throws InterruptedException {
+        if (isRunning()) {
+            throw new IllegalStateException("Pond can not run on this thread while running");
+        }
+        long end = System.nanoTime() + duration.toNanos();
+        long steps = 0;
+        resetStepRate();
+        while (System.nanoTime() - end < 0) {
+            steps(STEP_BATCH);
+            countSteps(STEP_BATCH);
+            steps += STEP_BATCH;
+            yieldPolicy.afterBatch(STEP_BATCH);
+        }
+        return steps;
+    }
+
+    public YieldPolicy getYieldPolicy() {
+        return yieldPolicy;
+    }
+
+    /**
+     * Change how the run loop gives up the processor, see {@link YieldPolicy}. The
+     * default sleeps a millisecond every {@link #STEP_BATCH} steps. A pond running on
+     * several threads never pauses.
+     */
+    public void setYieldPolicy(YieldPolicy policy) {
+        yieldPolicy = policy;
+    }
+
+    /**
+     * @return number of steps per second the run loop achieved over the last second
+     */
+    public double getStepsPerSecond() {
+        return stepsPerSecond;
+    }
+
+    private void resetStepRate() {
+        rateStart = System.nanoTime();
+        rateSteps = 0;
+    }
+
+    /*
+     * Called from the thread that runs the pond, or by the tiled engine between phases.
+     */
+    void countSteps(long steps) {
+        countedClock = clock;
+        rateSteps += steps;
+        long elapsed = System.nanoTime() - rateStart;
+        if (elapsed >= 1_000_000_000L) {
+            stepsPerSecond = rateSteps * 1e9 / elapsed;
+            resetStepRate();
+        }
+    }
+
+    /**
+     * Run the pond on several threads at once. The pond is split in tiles and every
+     * thread executes cells in its own tiles, see {@link TiledEngine}.
+     *
+     * @param threads number of threads, one or less runs the pond like {@link #run()}, as
+     *                does a pond that is too small to cut in tiles
+     */
+    public void run(int threads) {
+        if (threads <= 1 || !TiledEngine.canTile(storage.sizeX, storage.sizeY)) {
+            run();
+        } else if (thread == null && engine == null) {
+            resetStepRate();
+            engine = new TiledEngine(this, threads);
+            engine.start();
+        }
+    }
+
+    /**
+     * @return whether a worker thread failed, the pond then no longer advances and
+     * {@link #pauze()} throws the failure
+     */
+    public boolean hasFailed() {
+        TiledEngine running = engine;
+        return running != null && running.hasFailed();
+    }
+
+    /**
+     * Stop the pond and wait until it stopped.
+     *
+     * @throws IllegalStateException if a worker thread failed, the pond is stopped anyway
+     */
+    public void pauze() {
+        IllegalStateException failure = null;
+        if (engine != null) {
+            TiledEngine stopping = engine;
+            engine = null;
+            try {
+                stopping.stop();
+            } catch (IllegalStateException e) {
+                failure = e;
+            }
+        }
+        if (thread != null) {
+            isRunning = false;
+            boolean retry = true;
+            while (retry) {
+                try {
+                    thread.join();
+                    retry = false;
+                } catch (InterruptedException e) {
+                    // swallow
+                }
+            }
+            thread = null;
+        }
+        /* Show where the pond stopped */
+        renderState.publish(clock);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /* Clock is incremented on each core loop */
+    private long clock = -1;
+
+    /* The clock when steps were last counted, for other threads while running */
+    private volatile long countedClock = -1;
+
+    /* Dumps the viable cells periodically, when set */
+    private PopulationDump populationDump = null;
+
+    /* This is used to generate unique cell IDs */
+    private final AtomicLong cellIdCounter = new AtomicLong();
+
+    static final double MUTATION_RATE = 0.000005;
+
+    /* Virtual machine used when the pond is stepped from a single thread */
+    private final VirtualMachine vm;
+
+    private MutationSchedule mutationSchedule = MutationSchedule.PER_INSTRUCTION;
+
+    /**
+     * Create a virtual machine for a worker thread, with its own random generator and
+     * statistics that need to be collected with {@link #collectStatistics}.
+     */
+    VirtualMachine newVirtualMachine() {
+        VirtualMachine worker = new VirtualMachine(this, rg.split(), new StatCounters(),
+                PondStatistics.forWorker(), new HotGenomes());
+        worker.setMutationSchedule(mutationSchedule);
+        return worker;
+    }
+
+    public MutationSchedule getMutationSchedule() {
+        return mutationSchedule;
+    }
+
+    /**
+     * Change how mutations are scheduled, only while the pond is not running.
+     */
+    public void setMutationSchedule(MutationSchedule schedule) {
+        mutationSchedule = schedule;
+        vm.setMutationSchedule(schedule);
+    }
+
+    /**
+     * Add the statistics of a worker machine to the global counters. Only called while
+     * the worker is not executing.
+     */
+    void collectStatistics(VirtualMachine worker) {
+        statCounters.add(worker.statCounters);
+        worker.statCounters.reset();
+        storage.statistics.add(worker.statistics);
+        hotGenomes.collect(worker.hotGenomes);
+    }
+
+    /**
+     * Reserve a block of unique cell ids, virtual machines running on different threads
+     * each take their own block.
+     *
+     * @param count number of ids to reserve
+     * @return the first id of the reserved block
+     */
+    long reserveCellIds(int count) {
+        return cellIdCounter.getAndAdd(count);
+    }
+
+    /**
+     * @return whether the pond is running on one or more threads
+     */
+    public boolean isRunning() {
+        return thread != null || engine != null;
+    }
+
+    /**
+     * @return number of longs in the state of the random source of the pond
+     */
+    int randomStateLength() {
+        return rg.getState().length;
+    }
+
+    /**
+     * Write everything except the cells that is needed to continue the pond exactly
+     * where it is, see {@link Checkpoint}.
+     */
+    void writeState(ByteBuffer buffer) {
+        buffer.putLong(clock);
+        buffer.putLong(cellIdCounter.get());
+        buffer.putLong(seedingID);
+        buffer.putInt(mutationSchedule.ordinal());
+        vm.writeState(buffer);
+        for (long word : rg.getState()) {
+            buffer.putLong(word);
+        }
+    }
+
+    /**
+     * Read what {@link #writeState} wrote. Everything is read and checked before the
+     * pond is changed, so a pond is left as it was when the state is refused.
+     */
+    void readState(ByteBuffer buffer) {
+        long savedClock = buffer.getLong();
+        long savedCellIdCounter = buffer.getLong();
+        long savedSeedingID = buffer.getLong();
+        int schedule = buffer.getInt();
+        if (schedule < 0 || schedule >= MutationSchedule.values().length) {
+            throw new IllegalArgumentException("Unknown mutation schedule " + schedule);
+        }
+        long nextCellId = buffer.getLong();
+        long lastCellId = buffer.getLong();
+        long mutationCountdown = buffer.getLong();
+        long[] state = new long[randomStateLength()];
+        for (int i = 0; i < state.length; i++) {
+            state[i] = buffer.getLong();
+        }
+
+        clock = savedClock;
+        cellIdCounter.set(savedCellIdCounter);
+        seedingID = savedSeedingID;
+        /* setting the schedule can draw from the random source, so before restoring it */
+        setMutationSchedule(MutationSchedule.values()[schedule]);
+        vm.setState(nextCellId, lastCellId, mutationCountdown);
+        rg.setState(state);
+    }
+
+    /*
+     * Introduce a random cell somewhere with a given energy level. This is called
+     * seeding and introduces both energy and entropy into the substrate.
+     */
+    private void inflow() {
+        int x = rg.nextInt(storage.sizeX);
+        int y = rg.nextInt(storage.sizeY);
+        int i = storage.index(x, y);
+        long oldGeneration = storage.generation[i];
+        int oldEnergy = storage.energy[i];
+
+        storage.id[i] = vm.newCellId();
+        storage.parentId[i] = 0;
+        storage.lineage[i] = storage.id[i];
+        storage.color[i] = LineageColors.forLineage(storage.id[i]);
+        if (ChangedCells.isViable(oldGeneration, oldEnergy)) {
+            storage.changes.mark(i);
+        }
+        storage.generation[i] = 0;
+        storage.energy[i] = INFLOW_RATE_BASE + (int) (rg.nextDouble() * INFLOW_RATE_VARIATION);
+        storage.statistics.update(oldGeneration, oldEnergy, 0, storage.energy[i]);
+        storage.setRandomGenome(i, rg);
+    }
+
+    /**
+     * Advance the clock with a number of steps that were executed elsewhere, and
+     * introduce the inflow that belongs to those steps. Only called while no cell is
+     * executing.
+     *
+     * @param steps number of executed steps
+     */
+    void advanceClock(long steps) {
+        long inflows = Math.floorDiv(clock + steps, INFLOW_FREQUENCY)
+                - Math.floorDiv(clock, INFLOW_FREQUENCY);
+        clock += steps;
+        for (long i = 0; i < inflows; i++) {
+            inflow();
+        }
+        /* At most one dump per phase, at its end */
+        if (populationDump != null) {
+            long frequency = populationDump.getFrequency();
+            if (clock / frequency > Math.max(clock - steps, 0) / frequency) {
+                populationDump.take(this);
+            }
+        }
+    }
+
+    /**
+     * @return the number of the last step the pond did, -1 before the first step; while
+     * the pond runs the last step of the last batch or phase. Unlike {@link #getReport()}
+     * this does not end the period of the next report.
+     */
+    public long getClock() {
+        return isRunning() ? countedClock : clock;
+    }
+
+    /**
+     * Periodically dump the viable cells, see {@link PopulationDump}. Only change this
+     * while the pond is not running.
+     *
+     * @param dump the dump to take every {@link PopulationDump#getFrequency()} ticks, or
+     *             null to stop dumping
+     */
+    public void setPopulationDump(PopulationDump dump) {
+        populationDump = dump;
+    }
+
+    /* Main loop */
+    public void singleStep() {
+
+        int facing = rg.nextInt(4);
+
+        /* increment clock */
+        clock++;
+
+        /*
+         * Introduce a random cell somewhere with a given energy level. This happens
+         * every INFLOW_FREQUENCY clock ticks.
+         */
+        if (clock % INFLOW_FREQUENCY == 0) {
+            inflow();
+        }
+
+        /* Periodically dump the viable population if a dump is set */
+        if (populationDump != null && clock > 0
+                && clock % populationDump.getFrequency() == 0) {
+            populationDump.take(this);
+        }
+
+        /* Pick a random cell to execute */
+        int x = rg.nextInt(storage.sizeX);
+        int y = rg.nextInt(storage.sizeY);
+
+        vm.execute(storage.index(x, y), facing);
+    }
+
+    /* Used for unique seed ids */
+    long seedingID = -1;
+
+    public boolean seed(int x, int y, byte[] genome) {
+        int i = storage.index(x, y);
+        storage.statistics.update(storage.generation[i], storage.energy[i], 5, 10000);
+        storage.generation[i] = 5;
+        storage.energy[i] = 10000;
+        storage.parentId[i] = seedingID;
+        storage.id[i] = seedingID;
+        storage.lineage[i] = seedingID;
+        storage.color[i] = LineageColors.forLineage(seedingID);
+        storage.changes.mark(i);
+        seedingID--;
+
+        storage.genomes.write(i, genome);
+
+        return true;
+    }
+}
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Pieter Pareit - initial API and implementation
+ ******************************************************************************/
+
+package be.ppareit.nanopond.core;
+
+import java.util.Arrays;
+
+import static be.ppareit.nanopond.core.NanoPond.POND_DEPTH;
+
+/**
+ * Genomes with the instructions packed in machine words, like POND_DEPTH_SYSWORDS in
+ * the original C program. Every long holds 16 instructions of 4 bits, instruction
+ * {@code i} of a genome is in word {@code i / 16} at bit {@code 4 * (i % 16)}.
+ */
+final class PackedGenomes extends Genomes {
+
+    /* Number of longs needed for one genome */
+    static final int WORDS = POND_DEPTH / 16;
+
+    static {
+        if (POND_DEPTH % 16 != 0) {
+            throw new RuntimeException("POND_DEPTH must be a multiple of 16 to pack genomes");
+        }
+    }
+
+    final long[] words;
+
+    PackedGenomes(int cells) {
+        words = new long[cells * WORDS];
+        Arrays.fill(words, -1L); /* all STOP instructions */
+    }
+
+    @Override
+    int get(int cell, int i) {
+        return (int) (words[cell * WORDS + (i >>> 4)] >>> ((i & 15) << 2)) & 0xf;
+    }
+
+    @Override
+    void set(int cell, int i, int instruction) {
+        int w = cell * WORDS + (i >>> 4);
+        int shift = (i & 15) << 2;
+        words[w] = (words[w] & ~(0xfL << shift)) | ((long) (instruction & 0xf) << shift);
+    }
+
+    @Override
+    void fill(int cell, int instruction) {
+        long word = instruction & 0xf;
+        word |= word << 4;
+        word |= word << 8;
+        word |= word << 16;
+        word |= word << 32;
+        Arrays.fill(words, cell * WORDS, (cell + 1) * WORDS, word);
+    }
+
+    @Override
+    void copy(Genomes src, int srcCell, int srcPos, int dstCell, int dstPos, int length) {
+        PackedGenomes from = (PackedGenomes) src;
+        /* Single instructions until the destination is at a word boundary */
+        while (length > 0 && (dstPos & 15) != 0) {
+            set(dstCell, dstPos++, from.get(srcCell, srcPos++));
+            length--;
+        }
+        /* Then whole words, shifted in place when the source is not aligned */
+        int srcBase = srcCell * WORDS;
+        int dstBase = dstCell * WORDS;
+        while (length >= 16) {
+            words[dstBase + (dstPos >>> 4)] = read16(from.words, srcBase, srcPos);
+            srcPos += 16;
+            dstPos += 16;
+            length -= 16;
+        }
+        while (length > 0) {
+            set(dstCell, dstPos++, from.get(srcCell, srcPos++));
+            length--;
+        }
+    }
+
+    /*
+     * Read 16 instructions starting at pos, they have to be inside the genome.
+     */
+    private static long read16(long[] words, int base, int pos) {
+        int w = base + (pos >>> 4);
+        int shift = (pos & 15) << 2;
+        if (shift == 0) {
+            return words[w];
+        }
+        return (words[w] >>> shift) | (words[w + 1] << (64 - shift));
+    }
+
+    @Override
+    void pack(int cell, long[] words) {
+        System.arraycopy(this.words, cell * WORDS, words, 0, WORDS);
+    }
+
+    @Override
+    Genomes newBuffer() {
+        return new PackedGenomes(1);
+    }
+}
@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Pieter Pareit - initial API and implementation
+ ******************************************************************************/
+
+package be.ppareit.nanopond.core;
+
+import java.util.Arrays;
+
+/**
+ * Totals over all active cells of a pond, cells with energy, kept up to date while the
+ * pond changes so a report does not have to scan the pond.
+ * <p>
+ * Every change to the energy or generation of a cell is passed to {@link #update}.
+ * The statistics of the pond itself also keep a histogram with the number of active
+ * cells per generation, so the maximum generation can be followed when cells die. The
+ * statistics of a worker thread only keep differences, including a log of the
+ * histogram changes, that are added to the pond between two phases with
+ * {@link #add(PondStatistics)}.
+ */
+final class PondStatistics {
+
+    long energy = 0;
+    long activeCells = 0;
+    long viableReplicators = 0;
+
+    private final boolean deferred;
+
+    /* Number of active cells per generation, and the highest generation in use */
+    private int[] generations;
+    private long maxGeneration = 0;
+
+    /* Histogram changes not yet added, a generation for an addition, its complement
+     * for a removal */
+    private long[] changes;
+    private int changeCount = 0;
+
+    private PondStatistics(boolean deferred) {
+        this.deferred = deferred;
+        if (deferred) {
+            changes = new long[256];
+        } else {
+            generations = new int[64];
+        }
+    }
+
+    /**
+     * @return statistics of a pond
+     */
+    static PondStatistics forPond() {
+        return new PondStatistics(false);
+    }
+
+    /**
+     * @return statistics for a worker, only valid once added to those of the pond
+     */
+    static PondStatistics forWorker() {
+        return new PondStatistics(true);
+    }
+
+    /**
+     * A cell changed from the old generation and energy to the new ones.
+     */
+    void update(long oldGeneration, int oldEnergy, long newGeneration, int newEnergy) {
+        energy += newEnergy - oldEnergy;
+        if (oldEnergy > 0) {
+            remove(oldGeneration);
+        }
+        if (newEnergy > 0) {
+            add(newGeneration);
+        }
+    }
+
+    /**
+     * Count all cells of a pond again, after the cells were changed without updates.
+     */
+    void recount(PondStorage storage) {
+        energy = 0;
+        activeCells = 0;
+        viableReplicators = 0;
+        changeCount = 0;
+        if (!deferred) {
+            Arrays.fill(generations, 0);
+            maxGeneration = 0;
+        }
+        for (int i = 0; i < storage.cells; i++) {
+            update(0, 0, storage.generation[i], storage.energy[i]);
+        }
+    }
+
+    long getMaxGeneration() {
+        return maxGeneration;
+    }
+
+    /**
+     * Add the differences of a worker and clear them.
+     */
+    void add(PondStatistics worker) {
+        energy += worker.energy;
+        activeCells += worker.activeCells;
+        viableReplicators += worker.viableReplicators;
+        for (int i = 0; i < worker.changeCount; i++) {
+            long change = worker.changes[i];
+            if (change >= 0) {
+                count(change);
+            } else {
+                uncount(~change);
+            }
+        }
+        worker.energy = 0;
+        worker.activeCells = 0;
+        worker.viableReplicators = 0;
+        worker.changeCount = 0;
+    }
+
+    private void add(long generation) {
+        activeCells++;
+        if (generation > 2) {
+            viableReplicators++;
+        }
+        if (deferred) {
+            log(generation);
+        } else {
+            count(generation);
+        }
+    }
+
+    private void remove(long generation) {
+        activeCells--;
+        if (generation > 2) {
+            viableReplicators--;
+        }
+        if (deferred) {
+            log(~generation);
+        } else {
+            uncount(generation);
+        }
+    }
+
+    private void log(long change) {
+        if (changeCount == changes.length) {
+            changes = Arrays.copyOf(changes, changes.length * 2);
+        }
+        changes[changeCount++] = change;
+    }
+
+    private void count(long generation) {
+        if (generation >= generations.length) {
+            generations = Arrays.copyOf(generations,
+                    (int) Math.max(generations.length * 2L, generation + 1));
+        }
+        generations[(int) generation]++;
+        if (generation > maxGeneration) {
+            maxGeneration = generation;
+        }
+    }
+
+    private void uncount(long generation) {
+        generations[(int) generation]--;
+        while (maxGeneration > 0 && generations[(int) maxGeneration] == 0) {
+            maxGeneration--;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Pieter Pareit - initial API and implementation
+ ******************************************************************************/
+
+package be.ppareit.nanopond.core;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static be.ppareit.nanopond.core.NanoPond.DIRECTION_X;
+import static be.ppareit.nanopond.core.NanoPond.DIRECTION_Y;
+import static be.ppareit.nanopond.core.NanoPond.POND_DEPTH;
+
+/**
+ * Storage for all the cells of a pond, as a structure of arrays.
+ * <p>
+ * Every property of a cell is kept in its own flat array, indexed by the cell index
+ * {@code y * sizeX + x}. The genomes of all cells are kept together in {@link Genomes},
+ * in the layout chosen for the pond. The virtual machine works directly on these arrays,
+ * {@link Cell} is only a view on one index.
+ * <p>
+ * The pond is a torus, the neighbors of every cell are looked up once and kept in a
+ * table, so following a neighbor never has to deal with the edges.
+ */
+final class PondStorage {
+
+    final int sizeX;
+    final int sizeY;
+    final int cells;
+
+    final int[] energy;
+    final long[] generation;
+    final long[] id;
+    final long[] parentId;
+    final long[] lineage;
+    /* Color of the lineage of every cell, see LineageColors, to be updated with lineage */
+    final int[] color;
+    final Genomes genomes;
+
+    /* Totals over the active cells, to be updated on every change of energy or generation */
+    final PondStatistics statistics = PondStatistics.forPond();
+
+    /* Cells that may look different since the last published frame */
+    final ChangedCells changes;
+
+    /* Index of the neighbor of cell i in direction d is at 4 * i + d */
+    final int[] neighbors;
+
+    PondStorage(int sizeX, int sizeY, NanoPond.GenomeLayout layout) {
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.cells = sizeX * sizeY;
+        energy = new int[cells];
+        generation = new long[cells];
+        id = new long[cells];
+        parentId = new long[cells];
+        lineage = new long[cells];
+        color = new int[cells];
+        Arrays.fill(color, LineageColors.forLineage(0));
+        genomes = Genomes.create(layout, cells);
+        changes = new ChangedCells(cells);
+        neighbors = new int[cells * 4];
+        for (int y = 0; y < sizeY; y++) {
+            for (int x = 0; x < sizeX; x++) {
+                for (int d = 0; d < 4; d++) {
+                    int nx = (x + DIRECTION_X[d] + sizeX) % sizeX;
+                    int ny = (y + DIRECTION_Y[d] + sizeY) % sizeY;
+                    neighbors[index(x, y) * 4 + d] = index(nx, ny);
+                }
+            }
+        }
+    }
+
+    int index(int x, int y) {
+        return y * sizeX + x;
+    }
+
+    /**
+     * @return index of the neighbor of a cell, in direction {@code dir} as index in
+     * DIRECTION_X and DIRECTION_Y
+     */
+    int neighbor(int index, int dir) {
+        return neighbors[(index << 2) + dir];
+    }
+
+    /**
+     * @return number of bytes {@link #write} needs for a number of cells
+     */
+    static long byteSize(long cells) {
+        return cells * (4 + 4 * 8 + POND_DEPTH / 2);
+    }
+
+    /**
+     * Write all cells. Genomes are written as two instructions per byte, the first in
+     * the high nibble, whatever the layout in memory.
+     */
+    void write(ByteBuffer buffer) {
+        buffer.asIntBuffer().put(energy);
+        buffer.position(buffer.position() + cells * 4);
+        for (long[] values : new long[][]{generation, id, parentId, lineage}) {
+            buffer.asLongBuffer().put(values);
+            buffer.position(buffer.position() + cells * 8);
+        }
+        for (int c = 0; c < cells; c++) {
+            for (int i = 0; i < POND_DEPTH; i += 2) {
+                buffer.put((byte) (genomes.get(c, i) << 4 | genomes.get(c, i + 1)));
+            }
+        }
+    }
+
+    /**
+     * @return a hash of all cells, the same whatever the layout of the genomes
+     */
+    long hash() {
+        long[] packed = new long[POND_DEPTH / 16];
+        long hash = cells;
+        for (int c = 0; c < cells; c++) {
+            hash = Genomes.mix(hash, energy[c]);
+            hash = Genomes.mix(hash, generation[c]);
+            hash = Genomes.mix(hash, id[c]);
+            hash = Genomes.mix(hash, parentId[c]);
+            hash = Genomes.mix(hash, lineage[c]);
+            genomes.pack(c, packed);
+            hash = Genomes.mix(hash, Genomes.hash(packed));
+        }
+        return hash;
+    }
+
+    /**
+     * Read all cells written by {@link #write}, compute their colors and statistics again
+     * and mark all cells as changed.
+     */
+    void read(ByteBuffer buffer) {
+        buffer.asIntBuffer().get(energy);
+        buffer.position(buffer.position() + cells * 4);
+        for (long[] values : new long[][]{generation, id, parentId, lineage}) {
+            buffer.asLongBuffer().get(values);
+            buffer.position(buffer.position() + cells * 8);
+        }
+        for (int c = 0; c < cells; c++) {
+            for (int i = 0; i < POND_DEPTH; i += 2) {
+                int b = buffer.get();
+                genomes.set(c, i, (b >>> 4) & 0xf);
+                genomes.set(c, i + 1, b & 0xf);
+            }
+        }
+        for (int c = 0; c < cells; c++) {
+            color[c] = LineageColors.forLineage(lineage[c]);
+        }
+        statistics.recount(this);
+        changes.markAll();
+    }
+
+    /**
+     * Fill genome of the cell with random instructions
+     */
+    void setRandomGenome(int index, RandomSource rg) {
+        for (int i = 0; i < POND_DEPTH; i++) {
+            genomes.set(index, i, rg.nextInt(16));
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Pieter Pareit - initial API and implementation
+ ******************************************************************************/
+
+package be.ppareit.nanopond.core;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static be.ppareit.nanopond.core.NanoPond.POND_DEPTH;
+
+/**
+ * Dumps all viable replicators, cells with energy and a generation above 2, to disk,
+ * like doDump in the original C program. Every dump is a gzipped file
+ * {@code <clock>.dump.csv.gz} with a line per cell: ID, parent ID, lineage, generation
+ * and the genome in hex, up to and including four STOP instructions in a row.
+ * <p>
+ * The thread that runs the pond only copies the viable cells in one of two snapshots,
+ * a background thread compresses and writes them. When both snapshots are still being
+ * written the dump is skipped, so the pond never waits for the disk.
+ */
+public final class PopulationDump implements Closeable {
+
+    /* Viable cells of a pond at one moment */
+    static final class Snapshot {
+        long clock;
+        int count;
+        long[] id = new long[0];
+        long[] parentId = new long[0];
+        long[] lineage = new long[0];
+        long[] generation = new long[0];
+        byte[] genomes = new byte[0];
+
+        void take(long clock, PondStorage storage) {
+            this.clock = clock;
+            count = 0;
+            for (int c = 0; c < storage.cells; c++) {
+                if (storage.energy[c] > 0 && storage.generation[c] > 2) {
+                    if (count == id.length) {
+                        grow();
+                    }
+                    id[count] = storage.id[c];
+                    parentId[count] = storage.parentId[c];
+                    lineage[count] = storage.lineage[c];
+                    generation[count] = storage.generation[c];
+                    for (int i = 0; i < POND_DEPTH; i++) {
+                        genomes[count * POND_DEPTH + i] = (byte) storage.genomes.get(c, i);
+                    }
+                    count++;
+                }
+            }
+        }
+
+        private void grow() {
+            int capacity = Math.max(64, id.length * 2);
+            id = Arrays.copyOf(id, capacity);
+            parentId = Arrays.copyOf(parentId, capacity);
+            lineage = Arrays.copyOf(lineage, capacity);
+            generation = Arrays.copyOf(generation, capacity);
+            genomes = Arrays.copyOf(genomes, capacity * POND_DEPTH);
+        }
+
+        void write(Writer out) throws IOException {
+            StringBuilder line = new StringBuilder();
+            for (int n = 0; n < count; n++) {
+                line.setLength(0);
+                line.append(id[n]).append(',').append(parentId[n]).append(',')
+                        .append(lineage[n]).append(',').append(generation[n]).append(',');
+                /*
+                 * Four STOP instructions in a row is considered the end. This can only
+                 * underestimate the size of the genome.
+                 */
+                int stopCount = 0;
+                for (int i = 0; i < POND_DEPTH; i++) {
+                    int instruction = genomes[n * POND_DEPTH + i];
+                    line.append(Character.forDigit(instruction, 16));
+                    if (instruction == 0xf) {
+                        if (++stopCount >= 4) {
+                            break;
+                        }
+                    } else {
+                        stopCount = 0;
+                    }
+                }
+                line.append('\n');
+                out.append(line);
+            }
+        }
+    }
+
+    private final Path directory;
+    private final long frequency;
+    private final BlockingQueue<Snapshot> free = new ArrayBlockingQueue<>(2);
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "NanoPond-dump");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param directory where the dumps are written
+     * @param frequency number of clock ticks between two dumps, like DUMP_FREQUENCY
+     */
+    public PopulationDump(Path directory, long frequency) {
+        if (frequency <= 0) {
+            throw new IllegalArgumentException("Dump frequency must be positive");
+        }
+        this.directory = directory;
+        this.frequency = frequency;
+        free.add(new Snapshot());
+        free.add(new Snapshot());
+    }
+
+    public long getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * Dump the viable cells of a pond now. Only call this from the thread that runs the
+     * pond, or while the pond is paused.
+     *
+     * @return false if the dump was skipped because the previous dumps are still being
+     * written
+     */
+    public boolean take(NanoPond nanoPond) {
+        Snapshot snapshot = free.poll();
+        if (snapshot == null) {
+            System.err.println("[WARNING] Skipping dump, the previous dumps are still being written");
+            return false;
+        }
+        snapshot.take(nanoPond.getClock(), nanoPond.storage);
+        writer.execute(() -> {
+            try {
+                write(snapshot);
+            } finally {
+                free.add(snapshot);
+            }
+        });
+        return true;
+    }
+
+    private void write(Snapshot snapshot) {
+        Path file = directory.resolve(snapshot.clock + ".dump.csv.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file));
+             Writer text = new BufferedWriter(
+                     new OutputStreamWriter(out, StandardCharsets.US_ASCII))) {
+            snapshot.write(text);
+        } catch (IOException e) {
+            System.err.println("[WARNING] Could not write " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Wait until all dumps are written and stop the background thread.
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            while (!writer.awaitTermination(1, TimeUnit.SECONDS)) {
+                // keep waiting, the dumps are wanted
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
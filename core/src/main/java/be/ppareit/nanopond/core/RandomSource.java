@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Pieter Pareit - initial API and implementation
+ ******************************************************************************/
+
+package be.ppareit.nanopond.core;
+
+/**
+ * Source of random numbers for the pond.
+ * <p>
+ * A source is only used from one thread at a time and does not need to be synchronized.
+ * Every thread that executes cells gets its own source, created with {@link #split()}
+ * from the source of the pond, so all sources follow from the seed of the first one.
+ */
+public interface RandomSource {
+
+    /**
+     * @return a random value between 0 (inclusive) and bound (exclusive)
+     */
+    int nextInt(int bound);
+
+    /**
+     * @return a random value between 0.0 (inclusive) and 1.0 (exclusive)
+     */
+    double nextDouble();
+
+    long nextLong();
+
+    /**
+     * @return a new, independent source, seeded from the next values of this source
+     */
+    RandomSource split();
+
+    /**
+     * @return the internal state, to continue the same sequence later with
+     * {@link #setState(long[])}
+     */
+    long[] getState();
+
+    /**
+     * Continue the sequence from a state returned by {@link #getState()} of a source of
+     * the same type.
+     *
+     * @throws IllegalArgumentException if the state is not of this type of source
+     */
+    void setState(long[] state);
+}
@@ -0,0 +1,293 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Pieter Pareit - initial API and implementation
+ ******************************************************************************/
+
+package be.ppareit.nanopond.core;
+
+import java.time.Duration;
+import java.util.concurrent.locks.StampedLock;
+
+import static be.ppareit.nanopond.core.NanoPond.POND_DEPTH;
+
+/**
+ * What a view shows of a pond, published by the simulation as a consistent frame, so
+ * a view never sees half updated cells and never makes the simulation wait.
+ * <p>
+ * A frame holds for every cell whether it is a viable replicator, its lineage and the
+ * color of that lineage, and a full copy of one watched cell for a detail view. The
+ * simulation publishes a frame between batches of steps, at most once every frame
+ * interval. There are two frames: the simulation writes the one not published last,
+ * bringing it up to date with the cells that changed since it was written before.
+ * Readers copy a frame optimistically and try again if the simulation started writing
+ * it meanwhile, like a seqlock. That only happens to readers that take longer than a
+ * frame interval.
+ */
+public final class RenderState {
+
+    /* A published state of the pond */
+    private static final class Frame {
+        final StampedLock lock = new StampedLock();
+        long number;
+        long clock = -1;
+        final boolean[] viable;
+        final long[] lineage;
+        final int[] color;
+
+        /* Cells that changed since the previous frame */
+        final int[] changed;
+        int changedCount = 0;
+
+        /* Copy of the watched cell */
+        int watchedIndex = -1;
+        long watchedId;
+        long watchedParentId;
+        long watchedLineage;
+        long watchedGeneration;
+        int watchedEnergy;
+        final byte[] watchedGenome = new byte[POND_DEPTH];
+
+        Frame(int cells, long number) {
+            this.number = number;
+            viable = new boolean[cells];
+            lineage = new long[cells];
+            color = new int[cells];
+            changed = new int[cells];
+        }
+    }
+
+    /**
+     * A copy of a frame owned by one reader. The arrays are indexed by cell index, the
+     * lineage and its color are only meaningful for viable cells.
+     */
+    public static final class Snapshot {
+        public final boolean[] viable;
+        public final long[] lineage;
+        public final int[] color;
+
+        /* Cells that changed in the last read, the first changedCount entries */
+        public final int[] changed;
+        public int changedCount = 0;
+
+        /* Frame number and clock of the copied frame */
+        public long frame = -1;
+        public long clock = -1;
+
+        Snapshot(int cells) {
+            viable = new boolean[cells];
+            lineage = new long[cells];
+            color = new int[cells];
+            changed = new int[cells];
+        }
+    }
+
+    private final PondStorage storage;
+    private final Frame[] frames = new Frame[2];
+    private volatile Frame latest;
+
+    private volatile long intervalNanos = Duration.ofMillis(16).toNanos();
+    private long lastPublished = 0;
+    private volatile int watchedIndex = -1;
+
+    RenderState(PondStorage storage) {
+        this.storage = storage;
+        frames[0] = new Frame(storage.cells, 0);
+        frames[1] = new Frame(storage.cells, -1);
+        latest = frames[0];
+    }
+
+    /**
+     * @return a snapshot to read frames into, for one reader
+     */
+    public Snapshot newSnapshot() {
+        return new Snapshot(storage.cells);
+    }
+
+    /**
+     * Set the minimal time between two frames, a zero interval publishes after every
+     * batch of steps.
+     */
+    public void setFrameInterval(Duration interval) {
+        if (interval.isNegative()) {
+            throw new IllegalArgumentException("Frame interval can not be negative");
+        }
+        intervalNanos = interval.toNanos();
+    }
+
+    public Duration getFrameInterval() {
+        return Duration.ofNanos(intervalNanos);
+    }
+
+    /**
+     * Follow a cell in the next frames, with all its properties.
+     *
+     * @param index index of the cell, or -1 to follow no cell
+     */
+    public void setWatchedCell(int index) {
+        if (index < -1 || index >= storage.cells) {
+            throw new IndexOutOfBoundsException("No cell " + index);
+        }
+        watchedIndex = index;
+    }
+
+    /**
+     * Publish a frame when the frame interval passed. Only called by the thread running
+     * the pond, while no cell is executing.
+     */
+    void publishIfDue(long clock) {
+        long now = System.nanoTime();
+        if (now - lastPublished >= intervalNanos) {
+            publish(clock);
+            lastPublished = now;
+        }
+    }
+
+    /**
+     * Publish a frame of the current pond. Only called while no cell is executing, by
+     * one thread at a time.
+     */
+    void publish(long clock) {
+        Frame previous = latest;
+        Frame frame = previous == frames[0] ? frames[1] : frames[0];
+        long stamp = frame.lock.writeLock();
+        try {
+            /* The frame is two frames old, first catch up with the previous frame */
+            for (int n = 0; n < previous.changedCount; n++) {
+                copyCell(frame, previous.changed[n]);
+            }
+            frame.changedCount = storage.changes.poll(frame.changed);
+            for (int n = 0; n < frame.changedCount; n++) {
+                copyCell(frame, frame.changed[n]);
+            }
+            frame.number = previous.number + 1;
+            frame.clock = clock;
+
+            int watched = watchedIndex;
+            frame.watchedIndex = watched;
+            if (watched != -1) {
+                frame.watchedId = storage.id[watched];
+                frame.watchedParentId = storage.parentId[watched];
+                frame.watchedLineage = storage.lineage[watched];
+                frame.watchedGeneration = storage.generation[watched];
+                frame.watchedEnergy = storage.energy[watched];
+                storage.genomes.read(watched, frame.watchedGenome);
+            }
+        } finally {
+            frame.lock.unlockWrite(stamp);
+        }
+        latest = frame;
+    }
+
+    private void copyCell(Frame frame, int index) {
+        frame.viable[index] = ChangedCells.isViable(storage.generation[index],
+                storage.energy[index]);
+        frame.lineage[index] = storage.lineage[index];
+        frame.color[index] = storage.color[index];
+    }
+
+    /**
+     * Copy the latest frame into a snapshot. When the snapshot holds the frame just
+     * before, only the cells that changed are copied, otherwise all cells are compared.
+     * Either way the changed cells are listed in the snapshot.
+     *
+     * @return true if there was a new frame
+     */
+    public boolean read(Snapshot into) {
+        boolean incremental = true;
+        while (true) {
+            Frame frame = latest;
+            long stamp = frame.lock.tryOptimisticRead();
+            if (stamp == 0) {
+                continue;
+            }
+            long number = frame.number;
+            long clock = frame.clock;
+            if (number == into.frame && frame.lock.validate(stamp)) {
+                into.changedCount = 0;
+                return false;
+            }
+            if (incremental && number == into.frame + 1) {
+                int count = Math.min(frame.changedCount, frame.changed.length);
+                for (int n = 0; n < count; n++) {
+                    int index = frame.changed[n];
+                    into.changed[n] = index;
+                    into.viable[index] = frame.viable[index];
+                    into.lineage[index] = frame.lineage[index];
+                    into.color[index] = frame.color[index];
+                }
+                into.changedCount = count;
+            } else {
+                int count = 0;
+                for (int index = 0; index < into.viable.length; index++) {
+                    boolean viable = frame.viable[index];
+                    long lineage = frame.lineage[index];
+                    if (viable != into.viable[index]
+                            || (viable && lineage != into.lineage[index])) {
+                        into.changed[count++] = index;
+                        into.viable[index] = viable;
+                        into.lineage[index] = lineage;
+                        into.color[index] = frame.color[index];
+                    }
+                }
+                into.changedCount = count;
+            }
+            if (frame.lock.validate(stamp)) {
+                into.frame = number;
+                into.clock = clock;
+                return true;
+            }
+            /* A torn read may have left cells of several frames, compare them all */
+            incremental = false;
+        }
+    }
+
+    /**
+     * Copy the watched cell of the latest frame.
+     *
+     * @return false if the latest frame has no watched cell, the cell is then unchanged
+     */
+    public boolean readWatchedCell(Cell into) {
+        byte[] genome = new byte[POND_DEPTH];
+        while (true) {
+            Frame frame = latest;
+            long stamp = frame.lock.tryOptimisticRead();
+            if (stamp == 0) {
+                continue;
+            }
+            int index = frame.watchedIndex;
+            long id = frame.watchedId;
+            long parentId = frame.watchedParentId;
+            long lineage = frame.watchedLineage;
+            long generation = frame.watchedGeneration;
+            int energy = frame.watchedEnergy;
+            System.arraycopy(frame.watchedGenome, 0, genome, 0, POND_DEPTH);
+            if (!frame.lock.validate(stamp)) {
+                continue;
+            }
+            if (index == -1) {
+                return false;
+            }
+            into.setID(id);
+            into.setParentID(parentId);
+            into.setLineage(lineage);
+            into.setGeneration(generation);
+            into.setEnergy(energy);
+            into.setGenome(genome);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Pieter Pareit - initial API and implementation
+ ******************************************************************************/
+
+package be.ppareit.nanopond.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the pond on several threads at once.
+ * <p>
+ * The pond is cut in an even number of tiles in both directions, and the tiles are
+ * colored like a checkerboard with four colors. Executing a cell touches that cell and
+ * its four direct neighbors. As every tile is at least two cells wide and high, two
+ * tiles with the same color are always separated by a tile of another color, so cells
+ * in tiles of the same color can be executed at the same time.
+ * <p>
+ * The simulation advances in phases. During a phase the workers take the tiles of one
+ * color and execute, on average, every cell of those tiles once. Between two phases,
+ * when no worker is running, the statistics are collected and the clock and inflow are
+ * advanced for the executed steps. The workers never pause, the yield policy of the pond
+ * only throttles a pond running on one thread.
+ * <p>
+ * When a worker fails, it stops the others and the failure is thrown from {@link #stop()}.
+ */
+final class TiledEngine {
+
+    static final class Tile {
+        final int x0, y0, width, height;
+
+        Tile(int x0, int y0, int width, int height) {
+            this.x0 = x0;
+            this.y0 = y0;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private final NanoPond nanoPond;
+    private final Tile[][] tilesByColor;
+    private final long[] stepsByColor;
+    final VirtualMachine[] machines;
+    private final Thread[] workers;
+    private final CyclicBarrier barrier;
+    private final AtomicInteger nextTile = new AtomicInteger();
+
+    /* Written by the barrier action, so visible to all workers after the barrier */
+    private int color = 0;
+    /* Also cleared by a failing worker */
+    private volatile boolean running = true;
+
+    /* First failure of a worker, thrown from stop() */
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private volatile boolean stopRequested = false;
+
+    TiledEngine(NanoPond nanoPond, int threads) {
+        this.nanoPond = nanoPond;
+        int sizeX = nanoPond.getSizeX();
+        int sizeY = nanoPond.getSizeY();
+        this.tilesByColor = createTiles(sizeX, sizeY, tileCount(threads, sizeX),
+                tileCount(threads, sizeY));
+        this.stepsByColor = new long[tilesByColor.length];
+        for (int c = 0; c < tilesByColor.length; c++) {
+            for (Tile tile : tilesByColor[c]) {
+                stepsByColor[c] += (long) tile.width * tile.height;
+            }
+        }
+        this.machines = new VirtualMachine[threads];
+        this.workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            machines[i] = nanoPond.newVirtualMachine();
+            final VirtualMachine vm = machines[i];
+            workers[i] = new Thread(() -> work(vm));
+            workers[i].setName("NanoPond-worker-" + i);
+        }
+        this.barrier = new CyclicBarrier(threads, this::endPhase);
+    }
+
+    /**
+     * Number of tiles along one side of the pond. Always even so the coloring also
+     * holds where the pond wraps around, and small enough so a tile is at least two
+     * cells wide. We aim for about four tiles of each color per thread, so work can be
+     * balanced over the threads.
+     */
+    static int tileCount(int threads, int size) {
+        int count = 2 * (int) Math.ceil(Math.sqrt(4.0 * threads));
+        int max = (size / 2) & ~1;
+        return Math.max(2, Math.min(count, max));
+    }
+
+    /**
+     * @return whether a pond of this size can be cut in tiles, there have to be at least
+     * two tiles of two cells in both directions
+     */
+    static boolean canTile(int sizeX, int sizeY) {
+        return sizeX >= 4 && sizeY >= 4;
+    }
+
+    /**
+     * Cut the pond in tiles and group the tiles by color.
+     */
+    static Tile[][] createTiles(int sizeX, int sizeY, int tilesX, int tilesY) {
+        List<List<Tile>> colors = new ArrayList<>();
+        for (int c = 0; c < 4; c++) {
+            colors.add(new ArrayList<>());
+        }
+        for (int i = 0; i < tilesX; i++) {
+            int x0 = i * sizeX / tilesX;
+            int x1 = (i + 1) * sizeX / tilesX;
+            for (int j = 0; j < tilesY; j++) {
+                int y0 = j * sizeY / tilesY;
+                int y1 = (j + 1) * sizeY / tilesY;
+                colors.get((i % 2) * 2 + (j % 2)).add(new Tile(x0, y0, x1 - x0, y1 - y0));
+            }
+        }
+        Tile[][] tiles = new Tile[4][];
+        for (int c = 0; c < 4; c++) {
+            tiles[c] = colors.get(c).toArray(new Tile[0]);
+        }
+        return tiles;
+    }
+
+    void start() {
+        for (Thread worker : workers) {
+            worker.start();
+        }
+    }
+
+    /**
+     * Stop at the end of the current phase and wait for all workers to finish.
+     *
+     * @throws IllegalStateException if a worker failed, with the failure as cause
+     */
+    void stop() {
+        stopRequested = true;
+        boolean interrupted = false;
+        for (Thread worker : workers) {
+            boolean retry = true;
+            while (retry) {
+                try {
+                    worker.join();
+                    retry = false;
+                } catch (InterruptedException e) {
+                    /* the workers have to finish first, the caller learns it afterwards */
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        Throwable cause = failure.get();
+        if (cause != null) {
+            throw new IllegalStateException("A worker of the pond failed", cause);
+        }
+    }
+
+    boolean hasFailed() {
+        return failure.get() != null;
+    }
+
+    private void work(VirtualMachine vm) {
+        try {
+            while (running) {
+                Tile[] tiles = tilesByColor[color];
+                int t;
+                while ((t = nextTile.getAndIncrement()) < tiles.length) {
+                    executeTile(vm, tiles[t]);
+                }
+                barrier.await();
+            }
+        } catch (InterruptedException | BrokenBarrierException | RuntimeException | Error e) {
+            fail(e);
+        }
+    }
+
+    /*
+     * Stop all workers after the first failure. Workers waiting at the barrier are
+     * released by resetting it, the others are interrupted so they do not wait at the
+     * barrier again. Workers that fail because of that are not the cause.
+     */
+    private void fail(Throwable cause) {
+        if (!failure.compareAndSet(null, cause)) {
+            return;
+        }
+        running = false;
+        barrier.reset();
+        for (Thread worker : workers) {
+            if (worker != Thread.currentThread()) {
+                worker.interrupt();
+            }
+        }
+    }
+
+    private static void executeTile(VirtualMachine vm, Tile tile) {
+        int steps = tile.width * tile.height;
+        for (int s = 0; s < steps; s++) {
+            int facing = vm.rg.nextInt(4);
+            int x = tile.x0 + vm.rg.nextInt(tile.width);
+            int y = tile.y0 + vm.rg.nextInt(tile.height);
+            vm.execute(vm.storage.index(x, y), facing);
+        }
+    }
+
+    /*
+     * Runs on the last worker to reach the barrier, while all others are waiting.
+     */
+    private void endPhase() {
+        for (VirtualMachine vm : machines) {
+            nanoPond.collectStatistics(vm);
+        }
+        nanoPond.advanceClock(stepsByColor[color]);
+        nanoPond.countSteps(stepsByColor[color]);
+        nanoPond.publishFrameIfDue();
+        color = (color + 1) % tilesByColor.length;
+        nextTile.set(0);
+        running = !stopRequested && failure.get() == null;
+    }
+}
@@ -0,0 +1,609 @@
+/*
+ * VirtualMachine.java
+ *
+ * Copyright (C) 2007 Thomas Abeel
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * This program was based on the Nanopond 1.9 C program by Adam Ierymenko
+ * http://www.greythumb.org/wiki/Nanopond
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110 USA
+ *
+ */
+package be.ppareit.nanopond.core;
+
+import java.nio.ByteBuffer;
+
+import static be.ppareit.nanopond.core.NanoPond.FAILED_KILL_PENALTY;
+import static be.ppareit.nanopond.core.NanoPond.MUTATION_RATE;
+import static be.ppareit.nanopond.core.NanoPond.POND_DEPTH;
+import static be.ppareit.nanopond.core.NanoPond.PROFILING;
+
+/**
+ * The virtual machine that executes the genome of a single cell.
+ * <p>
+ * Each thread that executes cells owns its own virtual machine, so everything that is
+ * mutated while executing (random generator, loop stack, statistics, cell id block) is
+ * private to that thread. The pond itself is shared, the caller is responsible for not
+ * letting two machines execute neighboring cells at the same time.
+ */
+final class VirtualMachine {
+
+    /* Number of cell ids that are reserved at once from the pond */
+    private static final int CELL_ID_BLOCK = 1024;
+
+    private static final double LOG_NO_MUTATION = Math.log1p(-MUTATION_RATE);
+
+    /* Jump of a LOOP that never reaches its matching REP */
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+
+    private static final int[] BITS = {0, 1, 1, 2, 1, 2, 2, 3, 1, 2, 2, 3, 2, 3, 3, 4};
+
+    private final NanoPond nanoPond;
+    final PondStorage storage;
+    private final int[] energy;
+    private final long[] generation;
+    private final long[] id;
+    private final long[] parentId;
+    private final long[] lineage;
+    private final int[] color;
+    private final Genomes genomes;
+    private final ChangedCells changes;
+    final RandomSource rg;
+    final NanoPond.StatCounters statCounters;
+    final PondStatistics statistics;
+    final HotGenomes hotGenomes;
+
+    /* Executions left before the next one is sampled, and the genome it started with */
+    private int sampleCountdown = HotGenomes.SAMPLE_INTERVAL;
+    private final long[] sampledGenome = new long[POND_DEPTH / 16];
+
+    /* Virtual machine loop/rep stack */
+    private final int loopStackPointer[] = new int[POND_DEPTH];
+
+    /* Decoded genomes of replicators, used with geometric mutations */
+    final GenomeCache genomeCache = new GenomeCache();
+
+    /* Output buffer, in the same layout as the genomes so it can be copied directly */
+    private final Genomes outputBuf;
+
+    /*
+     * With geometric mutation scheduling, the number of instructions and copied
+     * positions that will pass before the next mutation.
+     */
+    private boolean geometricMutations = false;
+    private long mutationCountdown = 0;
+
+    /* Block of cell ids reserved for this machine */
+    private long nextCellId = 0;
+    private long lastCellId = 0;
+
+    VirtualMachine(NanoPond nanoPond, RandomSource rg, NanoPond.StatCounters statCounters,
+                   PondStatistics statistics, HotGenomes hotGenomes) {
+        this.nanoPond = nanoPond;
+        this.storage = nanoPond.storage;
+        this.energy = nanoPond.storage.energy;
+        this.generation = nanoPond.storage.generation;
+        this.id = nanoPond.storage.id;
+        this.parentId = nanoPond.storage.parentId;
+        this.lineage = nanoPond.storage.lineage;
+        this.color = nanoPond.storage.color;
+        this.genomes = nanoPond.storage.genomes;
+        this.changes = nanoPond.storage.changes;
+        this.outputBuf = genomes.newBuffer();
+        this.rg = rg;
+        this.statCounters = statCounters;
+        this.statistics = statistics;
+        this.hotGenomes = hotGenomes;
+    }
+
+    void setMutationSchedule(NanoPond.MutationSchedule schedule) {
+        geometricMutations = schedule == NanoPond.MutationSchedule.GEOMETRIC;
+        if (geometricMutations) {
+            mutationCountdown = nextMutationGap();
+        }
+    }
+
+    /**
+     * Sample the number of positions without mutation before the next mutation. When
+     * every position mutates with MUTATION_RATE, this number follows a geometric
+     * distribution, which we sample by inversion.
+     */
+    long nextMutationGap() {
+        return (long) (Math.log1p(-rg.nextDouble()) / LOG_NO_MUTATION);
+    }
+
+    /**
+     * @return true if the next instruction or copied position mutates
+     */
+    private boolean mutates() {
+        if (!geometricMutations) {
+            return rg.nextDouble() < MUTATION_RATE;
+        }
+        if (mutationCountdown > 0) {
+            mutationCountdown--;
+            return false;
+        }
+        mutationCountdown = nextMutationGap();
+        return true;
+    }
+
+    /**
+     * Count the positions, up to a limit, that pass without mutation. If less than the
+     * limit is returned, the position right after them mutates.
+     */
+    private int unmutatedRun(int limit) {
+        if (!geometricMutations) {
+            int run = 0;
+            while (run < limit && rg.nextDouble() >= MUTATION_RATE) {
+                run++;
+            }
+            return run;
+        }
+        if (mutationCountdown >= limit) {
+            mutationCountdown -= limit;
+            return limit;
+        }
+        int run = (int) mutationCountdown;
+        mutationCountdown = nextMutationGap();
+        return run;
+    }
+
+    /**
+     * Count the instructions a LOOP at a position skips when the register is zero, up
+     * to and including the matching REP, wrapping at the end of the genome like the
+     * execution loop does. Nested LOOP and REP instructions are counted, also the
+     * skipping LOOP itself once the genome wraps.
+     *
+     * @return the number of instructions, or NO_MATCH if the matching REP never comes
+     */
+    static int loopJump(Genomes genomes, int c, int position) {
+        int depth = 1;
+        for (int t = 1; t <= POND_DEPTH; t++) {
+            int instruction = genomes.get(c, (position + t) % POND_DEPTH);
+            if (instruction == 0x9) {
+                depth++;
+            } else if (instruction == 0xa && --depth == 0) {
+                return t;
+            }
+        }
+        /*
+         * The depth never reached zero in a full pass, so it stays positive after it,
+         * and every next pass changes it as much again: the REP never comes
+         */
+        return NO_MATCH;
+    }
+
+    /**
+     * Write the state that carries over from one execution to the next.
+     */
+    void writeState(ByteBuffer buffer) {
+        buffer.putLong(nextCellId);
+        buffer.putLong(lastCellId);
+        buffer.putLong(mutationCountdown);
+    }
+
+    /**
+     * @return the hash continued with the state that carries over between executions
+     */
+    long hashState(long hash) {
+        hash = Genomes.mix(hash, nextCellId);
+        hash = Genomes.mix(hash, lastCellId);
+        return Genomes.mix(hash, mutationCountdown);
+    }
+
+    /**
+     * Set the state that {@link #writeState} wrote.
+     */
+    void setState(long nextCellId, long lastCellId, long mutationCountdown) {
+        this.nextCellId = nextCellId;
+        this.lastCellId = lastCellId;
+        this.mutationCountdown = mutationCountdown;
+    }
+
+    /**
+     * @return a cell id that is unique over all the machines of the pond
+     */
+    long newCellId() {
+        if (nextCellId == lastCellId) {
+            nextCellId = nanoPond.reserveCellIds(CELL_ID_BLOCK);
+            lastCellId = nextCellId + CELL_ID_BLOCK;
+        }
+        return nextCellId++;
+    }
+
+    /**
+     * Determines whether neighbor cell is accessible by the cell with the register value.
+     *
+     * @param reg                 register value of the attacking cell
+     * @param positiveInteraction kill & replace : false / share : true
+     * @param neighbor            index of the neighboring cell
+     * @return true if access to the neighbor is allowed, false in other cases
+     */
+    private boolean accessAllowed(int neighbor, byte reg, boolean positiveInteraction) {
+        if (parentId[neighbor] == 0) {
+            return true;
+        }
+        if (positiveInteraction) {
+            return BITS[genomes.get(neighbor, 0) ^ reg] <= rg.nextInt(4);
+        } else {
+            return BITS[genomes.get(neighbor, 0) ^ reg] >= rg.nextInt(4);
+        }
+
+    }
+
+    /**
+     * Execute the cell at the given index until it runs out of energy or stops.
+     *
+     * @param c      index of the cell in the pond storage
+     * @param facing direction in which the cell initially interacts with its neighbors,
+     *               see {@link PondStorage#neighbor}
+     */
+    void execute(final int c, int facing) {
+
+        /* Reset VM */
+        outputBuf.fill(0, 0xf); /* STOP instruction */
+        byte reg = 0;
+        int pointer = 0;
+        int loopStackPtr = 0;
+        int falseLoopDepth = 0;
+        boolean stop = false;
+
+        /* Keep track of how many cells have been executed */
+        statCounters.cellExecutions++;
+
+        /* The cell only changes its own energy, its statistics are updated at the end */
+        final int startEnergy = energy[c];
+        /* Energy gained or lost other than by executing, to count the cycles at the end */
+        int received = 0;
+
+        final boolean sampled = --sampleCountdown == 0;
+        if (sampled) {
+            sampleCountdown = HotGenomes.SAMPLE_INTERVAL;
+            genomes.pack(c, sampledGenome);
+        }
+
+        /*
+         * Replicators run the same genome over and over, with geometric mutations their
+         * decoded genome lets runs of instructions execute at once when no mutation can
+         * fall in them. It is dropped when the genome changes during execution.
+         */
+        int decoded = geometricMutations && generation[c] > 2
+                ? genomeCache.lookup(genomes, c) * POND_DEPTH : -1;
+
+        /* Core execution loop */
+        int instructionIndex = 0;// the current instruction index
+        while (energy[c] > 0 && !stop) {
+            /*
+             * Randomly frob either the instruction or the register with a probability
+             * defined by MUTATION_RATE. This introduces variation, and since the
+             * variation is introduced into the state of the VM it can have all manner of
+             * different effects on the end result.
+             */
+            // This is faulty execution by duplicating or skipping instructions
+            if (mutates()) {
+                int type = rg.nextInt(4);
+                switch (type) {
+                /* replacement */
+                    case 0:
+                        genomes.set(c, instructionIndex, rg.nextInt(16));
+                        decoded = -1;
+                        break;
+                /* change register */
+                    case 1:
+                        reg = (byte) rg.nextInt(16);
+                        break;
+                /* duplicate instruction execution */
+                    case 2:
+                        if (instructionIndex == 0) {
+                            instructionIndex = POND_DEPTH;
+                        }
+                        instructionIndex--;
+                        break;
+                /* skip instruction */
+                    case 3:
+                        instructionIndex++;
+                        instructionIndex %= POND_DEPTH;
+                        break;
+                }
+            }
+
+            /* Each instruction processed costs one unit of energy */
+            energy[c]--;
+            /* Execute the instruction */
+            final int instruction = genomes.get(c, instructionIndex);
+            if (falseLoopDepth > 0) {
+                /*
+                 * Skip forward to matching REP if we're in a false loop.
+                 */
+                if (instruction == 9) {
+                    falseLoopDepth++;
+                } /*
+                   * Decrement on REP
+                   */ else if (instruction == 10) {
+                    falseLoopDepth--;
+                }
+                if (PROFILING) {
+                    statCounters.energySpent[0x9]++;
+                }
+            } else {
+                /*
+                 * When no mutation and no lack of energy interrupts the run of this
+                 * instruction, the repeats of it are executed together with it.
+                 */
+                int repeats = 0;
+                if (decoded >= 0) {
+                    repeats = genomeCache.runs[decoded + instructionIndex] - 1;
+                    if (repeats > 0 && mutationCountdown >= repeats && energy[c] >= repeats) {
+                        mutationCountdown -= repeats;
+                        energy[c] -= repeats;
+                        instructionIndex += repeats;
+                    } else {
+                        repeats = 0;
+                    }
+                }
+
+                /*
+                 * Keep track of execution frequencies for each instruction
+                 */
+                if (PROFILING) {
+                    statCounters.instructionExecutions[instruction] += 1 + repeats;
+                    statCounters.energySpent[instruction] += 1 + repeats;
+                }
+
+                switch (instruction) {
+                    case 0x0: /* ZERO: Zero VM state registers */
+                        reg = 0;
+                        pointer = 0;
+                        break;
+                    case 0x1: /* FWD: Increment the pointer (wrap at end) */
+                        pointer += 1 + repeats;
+                        pointer %= POND_DEPTH;
+                        break;
+                    case 0x2: /* BACK: Decrement the pointer (wrap at beginning) */
+                        pointer = Math.floorMod(pointer - 1 - repeats, POND_DEPTH);
+                        break;
+                    case 0x3: /* INC: Increment the register */
+                        reg += 1 + repeats;
+                        reg %= 16;
+                        break;
+                    case 0x4: /* DEC: Decrement the register */
+                        reg = (byte) Math.floorMod(reg - 1 - repeats, 16);
+                        break;
+                    case 0x5: /* READG: Read into the register from genome */
+                        reg = (byte) genomes.get(c, pointer);
+                        break;
+                    case 0x6: /* WRITEG: Write out from the register to genome */
+                        genomes.set(c, pointer, reg);
+                        decoded = -1;
+                        break;
+                    case 0x7: /* READB: Read into the register from buffer */
+                        reg = (byte) outputBuf.get(0, pointer);
+                        break;
+                    case 0x8: /* WRITEB: Write out from the register to buffer */
+                        outputBuf.set(0, pointer, reg);
+                        break;
+                    case 0x9: /*
+                           * LOOP: Jump forward to matching REP if register is zero
+                           */
+                        if (reg > 0) {
+                            if (loopStackPtr >= POND_DEPTH) /* Stack overflow ends execution */ {
+                                stop = true;
+                            } else {
+                                loopStackPointer[loopStackPtr] = instructionIndex;
+                                loopStackPtr++;
+                            }
+                        } else {
+                            falseLoopDepth = 1;
+                            /*
+                             * Without mutation before the matching REP the skipped
+                             * instructions only cost energy, so with geometric mutations
+                             * they are skipped at once when the countdown allows it.
+                             * Without matching REP all energy goes.
+                             */
+                            if (geometricMutations) {
+                                int jump = decoded >= 0
+                                        ? genomeCache.jumps[decoded + instructionIndex]
+                                        : loopJump(genomes, c, instructionIndex);
+                                int steps = Math.min(jump, energy[c]);
+                                if (mutationCountdown >= steps) {
+                                    mutationCountdown -= steps;
+                                    energy[c] -= steps;
+                                    instructionIndex = (instructionIndex + steps) % POND_DEPTH;
+                                    falseLoopDepth = 0;
+                                    if (PROFILING) {
+                                        statCounters.energySpent[0x9] += steps;
+                                    }
+                                }
+                            }
+                        }
+
+                        break;
+                    case 0xa: /*
+                           * REP: Jump back to matching LOOP if register is nonzero
+                           */
+                        if (loopStackPtr > 0) {
+                            loopStackPtr--;
+                            if (reg > 0) {
+                                instructionIndex = loopStackPointer[loopStackPtr];
+                            /*
+                             * This ensures that the LOOP is rerun and that the
+                             * instruction pointer has not yet changed.
+                             */
+                                continue;
+                            }
+                        }
+                        break;
+                    case 0xb: /*
+                           * TURN: Turn in the direction specified by register
+                           */
+                        facing = reg & 3; /* reg is never negative */
+                        break;
+                    case 0xc: /*
+                           * XCHG: Skip next instruction and exchange value of reg with it
+                           */
+                        instructionIndex++;
+                        instructionIndex %= POND_DEPTH;
+                        byte tmp = reg;
+                        reg = (byte) genomes.get(c, instructionIndex);
+                        genomes.set(c, instructionIndex, tmp);
+                        decoded = -1;
+
+                        break;
+                    case 0xd: /*
+                           * KILL: Blow away neighboring cell if allowed with penalty on
+                           * failure
+                           */
+                        int neighborKill = storage.neighbor(c, facing);
+                        if (accessAllowed(neighborKill, reg, false)) {
+                            if (generation[neighborKill] > 2) {
+                                statCounters.viableCellsKilled++;
+                            }
+                        /*
+                         * putting a STOP instruction as first instruction will kill the
+                         * neighboring cell
+                         */
+                            genomes.set(neighborKill, 0, 15);
+                            id[neighborKill] = newCellId();
+                            parentId[neighborKill] = 0;
+                            lineage[neighborKill] = id[neighborKill];
+                            color[neighborKill] = LineageColors.forLineage(id[neighborKill]);
+                            if (ChangedCells.isViable(generation[neighborKill],
+                                    energy[neighborKill])) {
+                                changes.mark(neighborKill);
+                            }
+                            statistics.update(generation[neighborKill], energy[neighborKill],
+                                    0, energy[neighborKill]);
+                            generation[neighborKill] = 0;
+
+                        } else if (generation[neighborKill] > 2) {
+                            if (PROFILING) {
+                                statCounters.energySpent[0xd] +=
+                                        energy[c] - energy[c] / FAILED_KILL_PENALTY;
+                            }
+                            received -= energy[c] - energy[c] / FAILED_KILL_PENALTY;
+                            energy[c] /= FAILED_KILL_PENALTY;
+                        }
+                        break;
+                    case 0xe: /*
+                           * SHARE: Equalize energy between self and neighbor if allowed
+                           */
+                        int neighborShare = storage.neighbor(c, facing);
+                        if (accessAllowed(neighborShare, reg, true)) {
+                            if (generation[neighborShare] > 2) {
+                                statCounters.viableCellShares++;
+                            }
+                            int newEnergy = (energy[c] + energy[neighborShare]) / 2;
+                            statistics.update(generation[neighborShare], energy[neighborShare],
+                                    generation[neighborShare], newEnergy);
+                            if (ChangedCells.isViable(generation[neighborShare],
+                                    energy[neighborShare])
+                                    != ChangedCells.isViable(generation[neighborShare],
+                                    newEnergy)) {
+                                changes.mark(neighborShare);
+                            }
+                            received += newEnergy - energy[c];
+                            energy[c] = newEnergy;
+                            energy[neighborShare] = newEnergy;
+                        }
+                        break;
+                    case 0xf: /* STOP: End execution */
+                        stop = true;
+                        break;
+                }
+            }
+
+            /*
+             * Increase instruction pointer and loop at the end of the genome
+             */
+            instructionIndex++;
+            instructionIndex %= POND_DEPTH;
+        }
+        /*
+         * Copy outputBuf into neighbor if access is permitted and there is energy there
+         * to make something happen. There is no need to copy to a cell with no energy,
+         * since anything copied there would never be executed and then would be replaced
+         * with random junk eventually. See the seeding code in the main loop above.
+         */
+        if (outputBuf.get(0, 0) != 15) {
+            int neighbor = storage.neighbor(c, facing);
+            if (energy[neighbor] > 0 && accessAllowed(neighbor, reg, false)) {
+                /* Log it if we're replacing a viable cell */
+                if (generation[neighbor] > 0) {
+                    statCounters.viableCellsReplaced++;
+                }
+                id[neighbor] = newCellId();
+                parentId[neighbor] = id[c];
+                /*
+                 * Lineage is copied in offspring
+                 */
+                lineage[neighbor] = lineage[c];
+                color[neighbor] = color[c];
+                if (generation[neighbor] > 2 || generation[c] + 1 > 2) {
+                    changes.mark(neighbor);
+                }
+                statistics.update(generation[neighbor], energy[neighbor],
+                        generation[c] + 1, energy[neighbor]);
+                generation[neighbor] = generation[c] + 1;
+                // This is a 'faulty' copy mechanism that allows minor
+                // mutations to enter when copying the cell
+                // alternative non faulty:
+                // genomes.copy(outputBuf, 0, 0, neighbor, 0, POND_DEPTH);
+                // Runs without mutation are copied at once, up to the next mutation.
+                int i = 0, j = 0;
+                while (i < POND_DEPTH && j < POND_DEPTH) {
+                    int limit = POND_DEPTH - Math.max(i, j);
+                    int run = unmutatedRun(limit);
+                    genomes.copy(outputBuf, 0, j, neighbor, i, run);
+                    i += run;
+                    j += run;
+                    if (run < limit) {
+                        int type = rg.nextInt(3);
+                        switch (type) {
+                        /* replacement */
+                            case 0:
+                                genomes.set(neighbor, i++, rg.nextInt(16));
+                                j++;
+                                break;
+                        /* duplicate instruction execution */
+                            case 1:
+                                genomes.set(neighbor, i++, outputBuf.get(0, j));
+                                i %= POND_DEPTH;
+                                genomes.set(neighbor, i++, outputBuf.get(0, j++));
+                                break;
+                        /* skip instruction */
+                            case 2:
+                                i++;
+                                j++;
+                                break;
+                        }
+                    }
+                }
+            }
+        }
+        /* Every instruction executed or skipped is a cycle costing one unit of energy */
+        int cycles = startEnergy + received - energy[c];
+        statCounters.executionLengths[32 - Integer.numberOfLeadingZeros(cycles)]++;
+        if (sampled && cycles > 0) {
+            hotGenomes.record(sampledGenome, cycles);
+        }
+        if (energy[c] != startEnergy) {
+            statistics.update(generation[c], startEnergy, generation[c], energy[c]);
+            if (ChangedCells.isViable(generation[c], startEnergy)
+                    != ChangedCells.isViable(generation[c], energy[c])) {
+                changes.mark(c);
+            }
+        }
+    }
+}
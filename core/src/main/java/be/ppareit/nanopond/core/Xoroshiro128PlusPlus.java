@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Pieter Pareit - initial API and implementation
+ ******************************************************************************/
+
+package be.ppareit.nanopond.core;
+
+/**
+ * The xoroshiro128++ generator of David Blackman and Sebastiano Vigna, see
+ * <a href="https://prng.di.unimi.it/">https://prng.di.unimi.it/</a>.
+ * <p>
+ * Small, fast and not synchronized. The state is seeded from a single long with
+ * SplitMix64, as recommended by the authors.
+ */
+public final class Xoroshiro128PlusPlus implements RandomSource {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long s0;
+    private long s1;
+
+    public Xoroshiro128PlusPlus(long seed) {
+        this(mix64(seed + GOLDEN_GAMMA), mix64(seed + 2 * GOLDEN_GAMMA));
+    }
+
+    Xoroshiro128PlusPlus(long s0, long s1) {
+        if (s0 == 0 && s1 == 0) {
+            /* the all zero state only generates zeros */
+            s0 = GOLDEN_GAMMA;
+        }
+        this.s0 = s0;
+        this.s1 = s1;
+    }
+
+    /* The SplitMix64 output function */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public long nextLong() {
+        final long s0 = this.s0;
+        long s1 = this.s1;
+        final long result = Long.rotateLeft(s0 + s1, 17) + s0;
+        s1 ^= s0;
+        this.s0 = Long.rotateLeft(s0, 49) ^ s1 ^ (s1 << 21);
+        this.s1 = Long.rotateLeft(s1, 28);
+        return result;
+    }
+
+    /*
+     * Lemire's multiply and shift, rejecting the few values that would make the result
+     * biased.
+     */
+    @Override
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive: " + bound);
+        }
+        long m = (nextLong() >>> 32) * bound;
+        int low = (int) m;
+        if (Integer.compareUnsigned(low, bound) < 0) {
+            int threshold = Integer.remainderUnsigned(-bound, bound);
+            while (Integer.compareUnsigned(low, threshold) < 0) {
+                m = (nextLong() >>> 32) * bound;
+                low = (int) m;
+            }
+        }
+        return (int) (m >>> 32);
+    }
+
+    @Override
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    @Override
+    public RandomSource split() {
+        return new Xoroshiro128PlusPlus(nextLong());
+    }
+
+    @Override
+    public long[] getState() {
+        return new long[]{s0, s1};
+    }
+
+    @Override
+    public void setState(long[] state) {
+        if (state.length != 2 || (state[0] == 0 && state[1] == 0)) {
+            throw new IllegalArgumentException("Not a xoroshiro128++ state");
+        }
+        s0 = state[0];
+        s1 = state[1];
+    }
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2018 Pieter Pareit.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     Pieter Pareit - initial API and implementation
+ ******************************************************************************/
+
+package be.ppareit.nanopond.core;
+
+import java.time.Duration;
+
+/**
+ * Decides how a running pond gives up the processor.
+ * <p>
+ * The run loop steps the pond in batches, and after every batch it asks the policy
+ * whether to pause. A policy is used by one run loop at a time, so it can keep state.
+ */
+public interface YieldPolicy {
+
+    /**
+     * Called by the run loop after every batch of steps, may block to throttle the pond.
+     *
+     * @param steps number of steps in the batch that just finished
+     */
+    void afterBatch(long steps) throws InterruptedException;
+
+    /**
+     * Never pause, for headless runs that should go as fast as possible.
+     */
+    YieldPolicy NONE = steps -> {
+    };
+
+    /**
+     * Sleep a fixed time after every batch. This is how the pond always ran, with a
+     * batch of 1013 steps and a sleep of one millisecond.
+     */
+    static YieldPolicy fixedSleep(long millis) {
+        return steps -> Thread.sleep(millis);
+    }
+
+    /**
+     * Run for a time slice, then let other threads run with {@link Thread#yield()}.
+     */
+    static YieldPolicy timeSlice(Duration slice) {
+        final long sliceNanos = slice.toNanos();
+        return new YieldPolicy() {
+            private long sliceStart = System.nanoTime();
+
+            @Override
+            public void afterBatch(long steps) {
+                long now = System.nanoTime();
+                if (now - sliceStart >= sliceNanos) {
+                    Thread.yield();
+                    sliceStart = System.nanoTime();
+                }
+            }
+        };
+    }
+
+    /**
+     * Use at most {@code budget} of every {@code frame}, then sleep until the next frame
+     * starts. This keeps a fixed share of the processor free, for instance for drawing.
+     */
+    static YieldPolicy frameBudget(Duration frame, Duration budget) {
+        if (budget.compareTo(frame) > 0) {
+            throw new IllegalArgumentException("Budget " + budget + " is longer than frame "
+                    + frame);
+        }
+        final long frameNanos = frame.toNanos();
+        final long budgetNanos = budget.toNanos();
+        return new YieldPolicy() {
+            private long frameStart = System.nanoTime();
+
+            @Override
+            public void afterBatch(long steps) throws InterruptedException {
+                long used = System.nanoTime() - frameStart;
+                if (used < budgetNanos) {
+                    return;
+                }
+                if (used < frameNanos) {
+                    long rest = frameNanos - used;
+                    Thread.sleep(rest / 1_000_000, (int) (rest % 1_000_000));
+                    frameStart += frameNanos;
+                } else {
+                    /* we are behind, do not try to catch up */
+                    frameStart = System.nanoTime();
+                }
+            }
+        };
+    }
+}
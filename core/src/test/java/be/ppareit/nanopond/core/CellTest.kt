@@ -3,6 +3,7 @@ package be.ppareit.nanopond.core
 import org.junit.Assert.assertArrayEquals
 import org.junit.Assert.assertEquals
 import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
 import org.junit.Test
 
 class CellTest {
@@ -11,7 +12,7 @@ class CellTest {
     fun constructorInitializesEmptyStoppedCell() {
         val cell = Cell()
 
-        assertEquals(0, cell.ID)
+        assertEquals(0, cell.id)
         assertEquals(0, cell.parentID)
         assertEquals(0, cell.lineage)
         assertEquals(0, cell.generation)
@@ -70,4 +71,34 @@ class CellTest {
 
         assertEquals("f", cell.hexa)
     }
+
+    @Test
+    fun cellOfPondIsViewOnThePondStorage() {
+        val nanoPond = NanoPond()
+        val cell = nanoPond.getCell(3, 4)
+
+        cell.energy = 42
+        cell.setGenome("0123")
+
+        val index = nanoPond.storage.index(3, 4)
+        assertEquals(42, nanoPond.storage.energy[index])
+        assertEquals(3, nanoPond.storage.genomes.get(index, 3))
+        assertEquals(42, nanoPond.getCell(3, 4).energy)
+    }
+
+    @Test
+    fun tooLongGenomeLeavesTheNextCellUntouched() {
+        val nanoPond = NanoPond()
+        val next = nanoPond.getCell(4, 4)
+        next.setGenome("0123456789abcdef")
+        val genome = next.genome
+
+        try {
+            nanoPond.getCell(3, 4).setGenome("0".repeat(NanoPond.POND_DEPTH + 16))
+            fail("A genome longer than POND_DEPTH is set")
+        } catch (e: IllegalArgumentException) {
+        }
+
+        assertArrayEquals(genome, next.genome)
+    }
 }
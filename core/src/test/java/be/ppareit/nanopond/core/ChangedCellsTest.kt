@@ -0,0 +1,91 @@
+package be.ppareit.nanopond.core
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Random
+
+class ChangedCellsTest {
+
+    /* What a view shows of a cell: nothing, or the lineage of a viable replicator */
+    private fun shown(cell: Cell): Long? =
+        if (cell.generation > 2 && cell.energy > 0) cell.lineage else null
+
+    private fun seedRandomCells(nanoPond: NanoPond, count: Int) {
+        val random = Random(7)
+        repeat(count) {
+            val genome = ByteArray(NanoPond.POND_DEPTH) { random.nextInt(16).toByte() }
+            nanoPond.seed(random.nextInt(nanoPond.sizeX), random.nextInt(nanoPond.sizeY), genome)
+        }
+    }
+
+    /* Follows the pond only through the changed cells, and checks against the pond */
+    private class View(private val nanoPond: NanoPond) {
+        private val indices = IntArray(nanoPond.sizeX * nanoPond.sizeY)
+        private val shown = arrayOfNulls<Long>(indices.size)
+
+        fun update(shownOf: (Cell) -> Long?): Int {
+            val count = nanoPond.storage.changes.poll(indices)
+            for (i in 0 until count) {
+                shown[indices[i]] = shownOf(nanoPond.getCell(indices[i]))
+            }
+            return count
+        }
+
+        fun check(shownOf: (Cell) -> Long?) {
+            val expected = Array(indices.size) { shownOf(nanoPond.getCell(it)) }
+            assertArrayEquals(expected, shown)
+        }
+    }
+
+    @Test
+    fun firstPollReturnsAllCells() {
+        val nanoPond = NanoPond()
+        val indices = IntArray(NanoPond.POND_SIZE_X * NanoPond.POND_SIZE_Y)
+
+        assertEquals(indices.size, nanoPond.storage.changes.poll(indices))
+        assertEquals(indices.size - 1, indices.last())
+        assertEquals(0, nanoPond.storage.changes.poll(indices))
+    }
+
+    @Test
+    fun changesThroughCellAreMarked() {
+        val nanoPond = NanoPond()
+        val indices = IntArray(NanoPond.POND_SIZE_X * NanoPond.POND_SIZE_Y)
+        nanoPond.storage.changes.poll(indices)
+
+        nanoPond.getCell(3, 0).lineage = 42
+
+        assertEquals(1, nanoPond.storage.changes.poll(indices))
+        assertEquals(3, indices[0])
+    }
+
+    @Test
+    fun onlyChangedCellsKeepAViewUpToDate() {
+        val nanoPond = NanoPond(NanoPond.GenomeLayout.BYTES, Xoroshiro128PlusPlus(5))
+        val view = View(nanoPond)
+        view.update(::shown)
+        seedRandomCells(nanoPond, 2000)
+
+        repeat(50) {
+            nanoPond.stepBatch(20_000)
+            view.update(::shown)
+            view.check(::shown)
+        }
+    }
+
+    @Test
+    fun fewCellsChangeBetweenFrames() {
+        val nanoPond = NanoPond(NanoPond.GenomeLayout.BYTES, Xoroshiro128PlusPlus(5))
+        val view = View(nanoPond)
+        view.update(::shown)
+        seedRandomCells(nanoPond, 2000)
+        nanoPond.stepBatch(1_000_000)
+        view.update(::shown)
+
+        nanoPond.stepBatch(20_000)
+
+        assertTrue(view.update(::shown) < NanoPond.POND_SIZE_X * NanoPond.POND_SIZE_Y / 10)
+    }
+}
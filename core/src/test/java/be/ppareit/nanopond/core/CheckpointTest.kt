@@ -0,0 +1,160 @@
+package be.ppareit.nanopond.core
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.fail
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.Channels
+import java.nio.file.Files
+
+class CheckpointTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private fun assertSamePond(expected: NanoPond, actual: NanoPond) {
+        assertEquals(expected.report.year, actual.report.year)
+        for (y in 0 until expected.sizeY) {
+            for (x in 0 until expected.sizeX) {
+                val e = expected.getCell(x, y)
+                val a = actual.getCell(x, y)
+                assertEquals(e.energy, a.energy)
+                assertEquals(e.generation, a.generation)
+                assertEquals(e.id, a.id)
+                assertEquals(e.parentID, a.parentID)
+                assertEquals(e.lineage, a.lineage)
+                assertEquals(e.color, a.color)
+                assertArrayEquals(e.genome, a.genome)
+            }
+        }
+    }
+
+    private fun assertRestoredPondContinuesTheSame(layout: NanoPond.GenomeLayout,
+                                                   schedule: NanoPond.MutationSchedule) {
+        val original = NanoPond(layout, Xoroshiro128PlusPlus(11))
+        original.mutationSchedule = schedule
+        original.seed(3, 3, ByteArray(NanoPond.POND_DEPTH) { (it % 16).toByte() })
+        original.stepBatch(1_000_000)
+        val file = folder.root.toPath().resolve("pond.checkpoint")
+
+        Checkpoint.save(original, file)
+        val restored = NanoPond(layout, Xoroshiro128PlusPlus(12))
+        Checkpoint.restore(restored, file)
+
+        assertSamePond(original, restored)
+        assertEquals(schedule, restored.mutationSchedule)
+        original.stepBatch(500_000)
+        restored.stepBatch(500_000)
+        assertSamePond(original, restored)
+        val expected = original.report
+        val actual = restored.report
+        assertEquals(expected.energy, actual.energy)
+        assertEquals(expected.activeCells, actual.activeCells)
+        assertEquals(expected.maxGeneration, actual.maxGeneration)
+    }
+
+    @Test
+    fun restoredPondContinuesTheSame() {
+        assertRestoredPondContinuesTheSame(
+            NanoPond.GenomeLayout.BYTES,
+            NanoPond.MutationSchedule.PER_INSTRUCTION
+        )
+    }
+
+    @Test
+    fun restoredPackedPondWithGeometricMutationsContinuesTheSame() {
+        assertRestoredPondContinuesTheSame(
+            NanoPond.GenomeLayout.PACKED,
+            NanoPond.MutationSchedule.GEOMETRIC
+        )
+    }
+
+    @Test
+    fun loadCreatesAPondOfTheSavedSize() {
+        val original = NanoPond(20, 10, NanoPond.GenomeLayout.BYTES, Xoroshiro128PlusPlus(3))
+        original.stepBatch(50_000)
+        val file = folder.root.toPath().resolve("small.checkpoint")
+        Checkpoint.save(original, file)
+
+        val loaded = Checkpoint.load(file, NanoPond.GenomeLayout.PACKED)
+
+        assertEquals(20, loaded.sizeX)
+        assertEquals(10, loaded.sizeY)
+        assertSamePond(original, loaded)
+    }
+
+    @Test
+    fun checkpointCanGoThroughStreams() {
+        val original = NanoPond(NanoPond.GenomeLayout.BYTES, Xoroshiro128PlusPlus(4))
+        original.stepBatch(100_000)
+        val bytes = ByteArrayOutputStream()
+
+        Checkpoint.save(original, Channels.newChannel(bytes))
+        val restored = NanoPond(NanoPond.GenomeLayout.BYTES, Xoroshiro128PlusPlus(5))
+        Checkpoint.restore(restored, Channels.newChannel(ByteArrayInputStream(bytes.toByteArray())))
+
+        assertSamePond(original, restored)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun checkpointOnlyFitsAPondOfTheSameSize() {
+        val bytes = ByteArrayOutputStream()
+        Checkpoint.save(NanoPond(), Channels.newChannel(bytes))
+
+        Checkpoint.restore(
+            NanoPond(10, 10, NanoPond.GenomeLayout.BYTES, Xoroshiro128PlusPlus(1)),
+            Channels.newChannel(ByteArrayInputStream(bytes.toByteArray()))
+        )
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun headerOfAnotherSizeIsRefusedBeforeReadingTheRest() {
+        val header = ByteBuffer.allocate(6 * 4)
+            .putInt(0x4e504e44).putInt(1).putInt(65_536).putInt(65_536)
+            .putInt(NanoPond.POND_DEPTH).putInt(2)
+
+        Checkpoint.restore(NanoPond(), Channels.newChannel(ByteArrayInputStream(header.array())))
+    }
+
+    @Test(expected = IOException::class)
+    fun headerOfAPondBiggerThanTheFileIsNotLoaded() {
+        val header = ByteBuffer.allocate(6 * 4)
+            .putInt(0x4e504e44).putInt(1).putInt(65_536).putInt(65_536)
+            .putInt(NanoPond.POND_DEPTH).putInt(2)
+        val file = folder.newFile("huge.npnd").toPath()
+        Files.write(file, header.array())
+
+        Checkpoint.load(file, NanoPond.GenomeLayout.PACKED)
+    }
+
+    @Test
+    fun refusedStateLeavesThePondAsItWas() {
+        val bytes = ByteArrayOutputStream()
+        Checkpoint.save(NanoPond(7), Channels.newChannel(bytes))
+        val damaged = bytes.toByteArray()
+        /* the mutation schedule follows the header, clock, cell id counter and seeding id */
+        ByteBuffer.wrap(damaged).putInt(6 * 4 + 3 * 8, 99)
+        val nanoPond = NanoPond(8)
+        nanoPond.stepBatch(10_000)
+        val hash = nanoPond.stateHash
+
+        try {
+            Checkpoint.restore(nanoPond, Channels.newChannel(ByteArrayInputStream(damaged)))
+            fail("A damaged mutation schedule is restored")
+        } catch (e: IllegalArgumentException) {
+        }
+
+        assertEquals(hash, nanoPond.stateHash)
+    }
+
+    @Test(expected = IOException::class)
+    fun otherFilesAreNotRestored() {
+        Checkpoint.restore(NanoPond(), Channels.newChannel(ByteArrayInputStream(ByteArray(100))))
+    }
+}
@@ -0,0 +1,92 @@
+package be.ppareit.nanopond.core
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Test
+import java.util.Random
+
+class GenomeCacheTest {
+
+    private val depth = NanoPond.POND_DEPTH
+
+    private fun genomesOf(vararg genome: ByteArray): Genomes {
+        val genomes = Genomes.create(NanoPond.GenomeLayout.PACKED, genome.size)
+        genome.forEachIndexed { cell, instructions -> genomes.write(cell, instructions) }
+        return genomes
+    }
+
+    @Test
+    fun decodesRunsOfRepeatingInstructions() {
+        // FWD FWD FWD WRITEG WRITEG INC, the rest READB up to the end of the genome
+        val genome = ByteArray(depth) { 0x7 }
+        byteArrayOf(0x1, 0x1, 0x1, 0x6, 0x6, 0x3).copyInto(genome)
+        val genomes = genomesOf(genome)
+        val cache = GenomeCache()
+
+        val base = cache.lookup(genomes, 0) * depth
+
+        assertEquals(listOf(3, 2, 1, 1, 1, 1, depth - 6, depth - 7),
+                (0 until 8).map { cache.runs[base + it].toInt() })
+        assertEquals(1, cache.runs[base + depth - 1].toInt())
+    }
+
+    @Test
+    fun decodesTheJumpOfEveryLoop() {
+        val random = Random(6)
+        val genome = ByteArray(depth) { listOf(0x9, 0xa, 0x3)[random.nextInt(3)].toByte() }
+        val genomes = genomesOf(genome)
+        val cache = GenomeCache()
+
+        val base = cache.lookup(genomes, 0) * depth
+
+        for (position in 0 until depth) {
+            if (genome[position].toInt() == 0x9) {
+                assertEquals(VirtualMachine.loopJump(genomes, 0, position),
+                        cache.jumps[base + position])
+            }
+        }
+    }
+
+    @Test
+    fun sameGenomeFindsTheSameEntry() {
+        val genome = ByteArray(depth) { (it % 16).toByte() }
+        val other = genome.copyOf().also { it[40] = 0x3 }
+        val genomes = genomesOf(genome, genome, other)
+        val cache = GenomeCache()
+
+        val entry = cache.lookup(genomes, 0)
+
+        assertEquals(entry, cache.lookup(genomes, 1))
+        assertNotEquals(entry, cache.lookup(genomes, 2))
+        assertEquals(entry, cache.lookup(genomes, 0))
+    }
+
+    @Test
+    fun leastRecentlyUsedGenomeMakesWay() {
+        val random = Random(7)
+        val genomes = Genomes.create(NanoPond.GenomeLayout.BYTES, 2000)
+        for (cell in 0 until 2000) {
+            genomes.write(cell, ByteArray(depth) { random.nextInt(16).toByte() })
+        }
+        val cache = GenomeCache()
+        val entries = IntArray(2000) { cache.lookup(genomes, it) }
+
+        // every entry is used again by the last genome that was put in it
+        val last = HashMap<Int, Int>()
+        entries.forEachIndexed { cell, entry -> last[entry] = cell }
+        for ((entry, cell) in last) {
+            assertEquals(entry, cache.lookup(genomes, cell))
+        }
+        // while those last genomes are still in use, the decoded genome stays right
+        for ((entry, cell) in last) {
+            val base = entry * depth
+            for (position in 0 until depth) {
+                val instruction = genomes.get(cell, position)
+                val run = if (position + 1 < depth && genomes.get(cell, position + 1) ==
+                        instruction && GenomeCache.repeats(instruction))
+                    cache.runs[base + position + 1] + 1 else 1
+                assertEquals(run, cache.runs[base + position].toInt())
+            }
+        }
+    }
+}
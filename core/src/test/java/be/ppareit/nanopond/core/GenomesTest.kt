@@ -0,0 +1,113 @@
+package be.ppareit.nanopond.core
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Random
+
+class GenomesTest {
+
+    private val depth = NanoPond.POND_DEPTH
+
+    private fun randomGenomes(layout: NanoPond.GenomeLayout, cells: Int, seed: Long): Genomes {
+        val random = Random(seed)
+        val genomes = Genomes.create(layout, cells)
+        for (cell in 0 until cells) {
+            for (i in 0 until depth) {
+                genomes.set(cell, i, random.nextInt(16))
+            }
+        }
+        return genomes
+    }
+
+    private fun assertSameGenomes(expected: Genomes, actual: Genomes, cells: Int) {
+        for (cell in 0 until cells) {
+            for (i in 0 until depth) {
+                assertEquals("cell $cell instruction $i", expected.get(cell, i), actual.get(cell, i))
+            }
+        }
+    }
+
+    @Test
+    fun newGenomesAreFilledWithStop() {
+        for (layout in NanoPond.GenomeLayout.values()) {
+            val genomes = Genomes.create(layout, 3)
+            for (cell in 0 until 3) {
+                assertTrue((0 until depth).all { genomes.get(cell, it) == 0xf })
+            }
+        }
+    }
+
+    @Test
+    fun packedSetOnlyChangesOneInstruction() {
+        val genomes = Genomes.create(NanoPond.GenomeLayout.PACKED, 2)
+
+        genomes.set(1, 17, 5)
+
+        assertEquals(5, genomes.get(1, 17))
+        assertEquals(0xf, genomes.get(1, 16))
+        assertEquals(0xf, genomes.get(1, 18))
+        assertTrue((0 until depth).all { genomes.get(0, it) == 0xf })
+    }
+
+    @Test
+    fun packedFillMatchesBytes() {
+        val bytes = randomGenomes(NanoPond.GenomeLayout.BYTES, 2, 1)
+        val packed = randomGenomes(NanoPond.GenomeLayout.PACKED, 2, 1)
+
+        bytes.fill(1, 9)
+        packed.fill(1, 9)
+
+        assertSameGenomes(bytes, packed, 2)
+    }
+
+    @Test
+    fun packedCopyMatchesBytesForEveryAlignment() {
+        val bytesSource = randomGenomes(NanoPond.GenomeLayout.BYTES, 1, 2)
+        val packedSource = randomGenomes(NanoPond.GenomeLayout.PACKED, 1, 2)
+        for (srcPos in 0 until depth step 3) {
+            for (dstPos in 0 until depth step 5) {
+                val maxLength = depth - maxOf(srcPos, dstPos)
+                for (length in 0..maxLength step 7) {
+                    val bytes = randomGenomes(NanoPond.GenomeLayout.BYTES, 2, 3)
+                    val packed = randomGenomes(NanoPond.GenomeLayout.PACKED, 2, 3)
+
+                    bytes.copy(bytesSource, 0, srcPos, 1, dstPos, length)
+                    packed.copy(packedSource, 0, srcPos, 1, dstPos, length)
+
+                    assertSameGenomes(bytes, packed, 2)
+                }
+            }
+        }
+    }
+
+    @Test
+    fun packIsTheSameForEveryLayout() {
+        val bytes = randomGenomes(NanoPond.GenomeLayout.BYTES, 2, 4)
+        val packed = randomGenomes(NanoPond.GenomeLayout.PACKED, 2, 4)
+        val fromBytes = LongArray(depth / 16)
+        val fromPacked = LongArray(depth / 16)
+
+        bytes.pack(1, fromBytes)
+        packed.pack(1, fromPacked)
+
+        assertTrue(fromBytes.contentEquals(fromPacked))
+        for (i in 0 until depth) {
+            assertEquals(bytes.get(1, i).toLong(), fromBytes[i / 16] ushr (4 * (i % 16)) and 0xf)
+        }
+    }
+
+    @Test
+    fun readAndWriteRoundTrip() {
+        val genome = ByteArray(depth) { (it * 7 % 16).toByte() }
+        for (layout in NanoPond.GenomeLayout.values()) {
+            val genomes = Genomes.create(layout, 2)
+            val copy = ByteArray(depth)
+
+            genomes.write(1, genome)
+            genomes.read(1, copy)
+
+            assertTrue(genome.contentEquals(copy))
+        }
+    }
+}
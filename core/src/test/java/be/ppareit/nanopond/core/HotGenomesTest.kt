@@ -0,0 +1,124 @@
+package be.ppareit.nanopond.core
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Random
+
+class HotGenomesTest {
+
+    private val depth = NanoPond.POND_DEPTH
+    private val interval = HotGenomes.SAMPLE_INTERVAL.toLong()
+
+    private fun packed(genome: ByteArray): LongArray {
+        val genomes = Genomes.create(NanoPond.GenomeLayout.PACKED, 1)
+        genomes.write(0, genome)
+        return LongArray(depth / 16).also { genomes.pack(0, it) }
+    }
+
+    @Test
+    fun genomesComeMostCyclesFirst() {
+        val first = ByteArray(depth) { 0x1 }
+        val second = ByteArray(depth) { (it % 16).toByte() }
+        val hotGenomes = HotGenomes()
+
+        hotGenomes.record(packed(second), 10)
+        hotGenomes.record(packed(first), 8)
+        hotGenomes.record(packed(first), 8)
+
+        val hot = hotGenomes.get()
+        assertEquals(2, hot.size)
+        assertArrayEquals(first, hot[0].genome)
+        assertEquals(16 * interval, hot[0].cycles)
+        assertEquals(Genomes.hash(packed(first)), hot[0].hash)
+        assertArrayEquals(second, hot[1].genome)
+        assertEquals(10 * interval, hot[1].cycles)
+    }
+
+    @Test
+    fun heavyGenomesStayWhenTheTableIsFull() {
+        val random = Random(3)
+        val heavy = ByteArray(depth) { 0x3 }
+        val hotGenomes = HotGenomes()
+
+        repeat(1000) {
+            hotGenomes.record(packed(ByteArray(depth) { random.nextInt(16).toByte() }), 1)
+            if (it % 10 == 0) {
+                hotGenomes.record(packed(heavy), 5)
+            }
+        }
+
+        val hot = hotGenomes.get()
+        assertArrayEquals(heavy, hot[0].genome)
+        assertEquals(500 * interval, hot[0].cycles)
+        // the replaced genomes leave their cycles, so none are lost
+        assertEquals(1500 * interval, hot.sumOf { it.cycles })
+    }
+
+    @Test
+    fun collectingEmptiesTheOtherTable() {
+        val genome = ByteArray(depth) { 0x5 }
+        val pond = HotGenomes()
+        val worker = HotGenomes()
+        pond.record(packed(genome), 3)
+        worker.record(packed(genome), 4)
+
+        pond.collect(worker)
+
+        assertEquals(7 * interval, pond.get().single().cycles)
+        assertTrue(worker.get().isEmpty())
+    }
+
+    @Test
+    fun pondSamplesTheExecutionsOfAllWorkers() {
+        val nanoPond = NanoPond(NanoPond.GenomeLayout.BYTES, Xoroshiro128PlusPlus(1))
+        val genome = ByteArray(depth) { 0xf }
+        // INC FWD STOP, three cycles
+        byteArrayOf(0x3, 0x1).copyInto(genome)
+        nanoPond.seed(0, 0, genome)
+        val workers = List(2) { nanoPond.newVirtualMachine() }
+
+        for (vm in workers) {
+            repeat(HotGenomes.SAMPLE_INTERVAL * 2) {
+                nanoPond.getCell(0, 0).energy = 100
+                vm.execute(0, 0)
+            }
+            nanoPond.collectStatistics(vm)
+        }
+
+        val hot = nanoPond.hotGenomes.single()
+        assertArrayEquals(genome, hot.genome)
+        assertEquals(4 * 3 * interval, hot.cycles)
+    }
+
+    @Test
+    fun readersOnlySeeWholeSamples() {
+        // every genome repeats one instruction after the first, a torn copy mixes them
+        val genomes = List(48) { k ->
+            packed(ByteArray(depth) { (k % 16).toByte() }.also { it[0] = (k / 16).toByte() })
+        }
+        val hotGenomes = HotGenomes()
+        val samples = 200_000
+        val writer = Thread {
+            val random = Random(8)
+            repeat(samples) { hotGenomes.record(genomes[random.nextInt(genomes.size)], 1) }
+        }
+
+        writer.start()
+        var seen = 0L
+        while (writer.isAlive) {
+            val hot = hotGenomes.get()
+            for (genome in hot) {
+                assertTrue((2 until depth).all { genome.genome[it] == genome.genome[1] })
+            }
+            // no sample gets lost in the table, and a copy never goes back in time
+            val total = hot.sumOf { it.cycles } / interval
+            assertTrue(total >= seen)
+            seen = total
+        }
+        writer.join()
+
+        assertEquals(samples * interval, hotGenomes.get().sumOf { it.cycles })
+    }
+}
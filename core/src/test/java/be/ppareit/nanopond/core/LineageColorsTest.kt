@@ -0,0 +1,40 @@
+package be.ppareit.nanopond.core
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.util.Random
+
+class LineageColorsTest {
+
+    @Test
+    fun seededLineagesTakeTurnsInBrightColors() {
+        assertEquals(0xff00ff00.toInt(), LineageColors.forLineage(-1))
+        assertEquals(0xff00ffff.toInt(), LineageColors.forLineage(-2))
+        assertEquals(0xffffffff.toInt(), LineageColors.forLineage(-6))
+        assertEquals(0xff00ff00.toInt(), LineageColors.forLineage(-7))
+    }
+
+    @Test
+    fun otherLineagesUseTheirLowestBytes() {
+        assertEquals(0xff000000.toInt(), LineageColors.forLineage(0))
+        assertEquals(0xff563412.toInt(), LineageColors.forLineage(0x123456))
+        assertEquals(0xff563412.toInt(), LineageColors.forLineage(0x7f123456))
+    }
+
+    @Test
+    fun pondKeepsTheColorOfEveryLineage() {
+        val nanoPond = NanoPond(NanoPond.GenomeLayout.BYTES, Xoroshiro128PlusPlus(13))
+        val random = Random(1)
+        repeat(1000) {
+            val genome = ByteArray(NanoPond.POND_DEPTH) { random.nextInt(16).toByte() }
+            nanoPond.seed(random.nextInt(nanoPond.sizeX), random.nextInt(nanoPond.sizeY), genome)
+        }
+        nanoPond.stepBatch(2_000_000)
+        nanoPond.getCell(4).lineage = 77
+
+        for (i in 0 until nanoPond.sizeX * nanoPond.sizeY) {
+            val cell = nanoPond.getCell(i)
+            assertEquals(LineageColors.forLineage(cell.lineage), cell.color)
+        }
+    }
+}
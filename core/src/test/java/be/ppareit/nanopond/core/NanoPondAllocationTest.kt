@@ -0,0 +1,39 @@
+package be.ppareit.nanopond.core
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.lang.management.ManagementFactory
+
+class NanoPondAllocationTest {
+
+    private val threadBean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+
+    private fun allocatedBytes(): Long = threadBean.getThreadAllocatedBytes(Thread.currentThread().id)
+
+    private fun assertStepsDoNotAllocate(nanoPond: NanoPond) {
+        // warm up, so replicators are around and every instruction is executed
+        repeat(500_000) { nanoPond.singleStep() }
+        allocatedBytes()
+
+        val before = allocatedBytes()
+        for (i in 0 until 200_000) {
+            nanoPond.singleStep()
+        }
+        val after = allocatedBytes()
+
+        assertEquals(0L, after - before)
+    }
+
+    @Test
+    fun singleStepDoesNotAllocate() {
+        assertStepsDoNotAllocate(NanoPond(NanoPond.GenomeLayout.BYTES, Xoroshiro128PlusPlus(3)))
+    }
+
+    @Test
+    fun singleStepWithPackedGenomesDoesNotAllocate() {
+        val nanoPond = NanoPond(NanoPond.GenomeLayout.PACKED, Xoroshiro128PlusPlus(3))
+        nanoPond.mutationSchedule = NanoPond.MutationSchedule.GEOMETRIC
+
+        assertStepsDoNotAllocate(nanoPond)
+    }
+}
@@ -0,0 +1,186 @@
+package be.ppareit.nanopond.core
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assume.assumeTrue
+import org.junit.Test
+
+class NanoPondReportTest {
+
+    @Test
+    fun getReportAggregatesOnlyActiveCells() {
+        val nanoPond = NanoPond()
+        nanoPond.getCell(0, 0).energy = 10
+        nanoPond.getCell(0, 0).generation = 1
+        nanoPond.getCell(1, 0).energy = 20
+        nanoPond.getCell(1, 0).generation = 3
+        nanoPond.getCell(2, 0).energy = 0
+        nanoPond.getCell(2, 0).generation = 9
+
+        val report = nanoPond.report
+
+        assertEquals(-1, report.year)
+        assertEquals(30, report.energy)
+        assertEquals(2, report.activeCells)
+        assertEquals(1, report.viableReplicators)
+        assertEquals(3, report.maxGeneration)
+    }
+
+    @Test
+    fun getReportResetsPerReportCounters() {
+        val nanoPond = NanoPond()
+        nanoPond.statCounters.viableCellsKilled = 2
+        nanoPond.statCounters.viableCellsReplaced = 3
+        nanoPond.statCounters.viableCellShares = 4
+
+        val firstReport = nanoPond.report
+        val secondReport = nanoPond.report
+
+        assertEquals(2, firstReport.kills)
+        assertEquals(3, firstReport.replaced)
+        assertEquals(4, firstReport.shares)
+        assertEquals(0, secondReport.kills)
+        assertEquals(0, secondReport.replaced)
+        assertEquals(0, secondReport.shares)
+    }
+
+    @Test
+    fun subscriptionsCountIndependently() {
+        val nanoPond = NanoPond()
+        nanoPond.statCounters.viableCellsKilled = 2
+        val first = nanoPond.subscribe()
+        nanoPond.statCounters.viableCellsKilled = 5
+        val second = nanoPond.subscribe()
+        nanoPond.statCounters.viableCellsKilled = 6
+
+        assertEquals(4, first.poll().kills)
+        assertEquals(6, nanoPond.report.kills)
+        assertEquals(1, second.poll().kills)
+        assertEquals(0, first.poll().kills)
+
+        nanoPond.statCounters.viableCellsKilled = 9
+
+        assertEquals(3, first.poll().kills)
+        assertEquals(3, second.poll().kills)
+        assertEquals(3, nanoPond.report.kills)
+    }
+
+    @Test
+    fun profileIsOnlyReportedWhenProfiling() {
+        val nanoPond = NanoPond()
+
+        assertEquals(NanoPond.PROFILING, nanoPond.report.profile != null)
+    }
+
+    @Test
+    fun profileCountsWhatWasExecutedSinceThePreviousReport() {
+        assumeTrue(NanoPond.PROFILING)
+        val nanoPond = NanoPond(NanoPond.GenomeLayout.BYTES, Xoroshiro128PlusPlus(1))
+        nanoPond.mutationSchedule = NanoPond.MutationSchedule.GEOMETRIC
+        val subscription = nanoPond.subscribe()
+        val vm = nanoPond.newVirtualMachine()
+        val genome = ByteArray(NanoPond.POND_DEPTH) { 0xf }
+        // LOOP INC INC REP INC FWD STOP, the loop is skipped
+        byteArrayOf(0x9, 0x3, 0x3, 0xa, 0x3, 0x1).copyInto(genome)
+        nanoPond.seed(0, 0, genome)
+        nanoPond.getCell(0, 0).energy = 100
+
+        vm.execute(0, 0)
+        nanoPond.collectStatistics(vm)
+
+        val profile = subscription.poll().profile
+        val executions = LongArray(16).also { it[0x9] = 1; it[0x3] = 1; it[0x1] = 1; it[0xf] = 1 }
+        val energy = executions.copyOf().also { it[0x9] = 4 }
+        assertArrayEquals(executions, profile.instructionExecutions)
+        assertArrayEquals(energy, profile.energySpent)
+        assertEquals(1, profile.cellExecutions)
+        assertEquals(4.0, profile.instructionsPerExecution, 0.0)
+        assertEquals(0.25, profile.getShare(0x3), 0.0)
+        assertEquals(0, subscription.poll().profile.instructions)
+    }
+
+    @Test
+    fun executionLengthsCountCyclesSinceThePreviousReport() {
+        val nanoPond = NanoPond(NanoPond.GenomeLayout.BYTES, Xoroshiro128PlusPlus(1))
+        nanoPond.mutationSchedule = NanoPond.MutationSchedule.GEOMETRIC
+        val subscription = nanoPond.subscribe()
+        val vm = nanoPond.newVirtualMachine()
+        val genome = ByteArray(NanoPond.POND_DEPTH) { 0xf }
+        // LOOP INC INC REP INC FWD STOP, seven cycles
+        byteArrayOf(0x9, 0x3, 0x3, 0xa, 0x3, 0x1).copyInto(genome)
+        nanoPond.seed(0, 0, genome)
+        nanoPond.getCell(0, 0).energy = 100
+
+        vm.execute(0, 0)
+        vm.execute(1, 0)
+        nanoPond.collectStatistics(vm)
+
+        val expected = LongArray(NanoPond.EXECUTION_LENGTH_BUCKETS).also { it[0] = 1; it[3] = 1 }
+        assertArrayEquals(expected, subscription.poll().executionLengths)
+        assertEquals(0, subscription.poll().executionLengths.sum())
+    }
+
+    @Test
+    fun maxGenerationFollowsCellsThatDie() {
+        val nanoPond = NanoPond()
+        nanoPond.getCell(0, 0).generation = 4
+        nanoPond.getCell(0, 0).energy = 10
+        nanoPond.getCell(5, 5).generation = 9
+        nanoPond.getCell(5, 5).energy = 10
+
+        assertEquals(9, nanoPond.report.maxGeneration)
+
+        nanoPond.getCell(5, 5).energy = 0
+
+        val report = nanoPond.report
+        assertEquals(4, report.maxGeneration)
+        assertEquals(1, report.activeCells)
+        assertEquals(10, report.energy)
+    }
+
+    private fun assertReportMatchesScan(nanoPond: NanoPond) {
+        var energy = 0L
+        var activeCells = 0L
+        var viableReplicators = 0L
+        var maxGeneration = 0L
+        for (y in 0 until NanoPond.POND_SIZE_Y) {
+            for (x in 0 until NanoPond.POND_SIZE_X) {
+                val cell = nanoPond.getCell(x, y)
+                if (cell.energy > 0) {
+                    energy += cell.energy
+                    activeCells++
+                    if (cell.generation > 2) viableReplicators++
+                    maxGeneration = maxOf(maxGeneration, cell.generation)
+                }
+            }
+        }
+
+        val report = nanoPond.report
+        assertEquals(energy, report.energy)
+        assertEquals(activeCells, report.activeCells)
+        assertEquals(viableReplicators, report.viableReplicators)
+        assertEquals(maxGeneration, report.maxGeneration)
+    }
+
+    @Test
+    fun incrementalReportMatchesScanAfterSteps() {
+        val nanoPond = NanoPond(NanoPond.GenomeLayout.BYTES, Xoroshiro128PlusPlus(9))
+        nanoPond.seed(10, 10, ByteArray(NanoPond.POND_DEPTH) { it.toByte() })
+
+        nanoPond.stepBatch(1_000_000)
+
+        assertReportMatchesScan(nanoPond)
+    }
+
+    @Test
+    fun incrementalReportMatchesScanAfterRunningOnSeveralThreads() {
+        val nanoPond = NanoPond(NanoPond.GenomeLayout.PACKED, Xoroshiro128PlusPlus(9))
+        nanoPond.yieldPolicy = YieldPolicy.NONE
+
+        nanoPond.run(4)
+        Thread.sleep(500)
+        nanoPond.pauze()
+
+        assertReportMatchesScan(nanoPond)
+    }
+}
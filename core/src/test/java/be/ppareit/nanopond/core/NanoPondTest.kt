@@ -0,0 +1,113 @@
+package be.ppareit.nanopond.core
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertThrows
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.time.Duration
+
+class NanoPondTest {
+
+    @Test
+    fun getNeighborWrapsAtPondEdges() {
+        val nanoPond = NanoPond()
+
+        assertSame(
+            nanoPond.getCell(NanoPond.POND_SIZE_X - 1, 5),
+            nanoPond.getNeighbor(0, 5, NanoPond.Direction.LEFT)
+        )
+        assertSame(
+            nanoPond.getCell(0, 5),
+            nanoPond.getNeighbor(NanoPond.POND_SIZE_X - 1, 5, NanoPond.Direction.RIGHT)
+        )
+        assertSame(
+            nanoPond.getCell(7, NanoPond.POND_SIZE_Y - 1),
+            nanoPond.getNeighbor(7, 0, NanoPond.Direction.UP)
+        )
+        assertSame(
+            nanoPond.getCell(7, 0),
+            nanoPond.getNeighbor(7, NanoPond.POND_SIZE_Y - 1, NanoPond.Direction.DOWN)
+        )
+    }
+
+    @Test
+    fun getNeighborReturnsAdjacentInteriorCells() {
+        val nanoPond = NanoPond()
+
+        assertSame(nanoPond.getCell(9, 10), nanoPond.getNeighbor(10, 10, NanoPond.Direction.LEFT))
+        assertSame(nanoPond.getCell(11, 10), nanoPond.getNeighbor(10, 10, NanoPond.Direction.RIGHT))
+        assertSame(nanoPond.getCell(10, 9), nanoPond.getNeighbor(10, 10, NanoPond.Direction.UP))
+        assertSame(nanoPond.getCell(10, 11), nanoPond.getNeighbor(10, 10, NanoPond.Direction.DOWN))
+    }
+
+    @Test
+    fun indexBasedNeighborsMatchPositionBasedNeighbors() {
+        val nanoPond = NanoPond()
+
+        for (y in 0 until NanoPond.POND_SIZE_Y) {
+            for (x in 0 until NanoPond.POND_SIZE_X) {
+                val index = nanoPond.getIndex(x, y)
+                assertSame(nanoPond.getCell(x, y), nanoPond.getCell(index))
+                for (dir in NanoPond.Direction.values()) {
+                    val neighbor = nanoPond.getNeighbor(x, y, dir)
+                    assertSame(neighbor, nanoPond.getNeighbor(index, dir))
+                    assertSame(neighbor, nanoPond.getCell(nanoPond.getNeighborIndex(index, dir)))
+                }
+            }
+        }
+    }
+
+    @Test
+    fun pondOfAChosenSizeWrapsAtItsOwnEdges() {
+        val nanoPond = NanoPond(7, 3, NanoPond.GenomeLayout.PACKED, Xoroshiro128PlusPlus(1))
+
+        assertEquals(7, nanoPond.sizeX)
+        assertEquals(3, nanoPond.sizeY)
+        assertSame(nanoPond.getCell(6, 1), nanoPond.getNeighbor(0, 1, NanoPond.Direction.LEFT))
+        assertSame(nanoPond.getCell(2, 0), nanoPond.getNeighbor(2, 2, NanoPond.Direction.DOWN))
+
+        nanoPond.stepBatch(100_000)
+        assertEquals(99_999, nanoPond.report.year)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun pondMustBeAtLeastTwoCellsWide() {
+        NanoPond(1, 5, NanoPond.GenomeLayout.BYTES, Xoroshiro128PlusPlus(1))
+    }
+
+    @Test
+    fun seedSetsCellMetadataAndCopiesGenome() {
+        val nanoPond = NanoPond()
+        val genome = ByteArray(NanoPond.POND_DEPTH) { (it % 16).toByte() }
+
+        assertTrue(nanoPond.seed(3, 4, genome))
+
+        val cell = nanoPond.getCell(3, 4)
+        assertEquals(5, cell.generation)
+        assertEquals(10000, cell.energy)
+        assertEquals(-1, cell.id)
+        assertEquals(-1, cell.parentID)
+        assertEquals(-1, cell.lineage)
+        assertArrayEquals(genome, cell.genome)
+    }
+
+    @Test
+    fun pondCanNotStepOnAnotherThreadWhileRunning() {
+        for (threads in intArrayOf(1, 4)) {
+            val nanoPond = NanoPond()
+            nanoPond.run(threads)
+            try {
+                assertThrows(IllegalStateException::class.java) { nanoPond.stepBatch(1) }
+                assertThrows(IllegalStateException::class.java) {
+                    nanoPond.runFor(Duration.ofMillis(1))
+                }
+            } finally {
+                nanoPond.pauze()
+            }
+
+            nanoPond.stepBatch(1)
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package be.ppareit.nanopond.core
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.zip.GZIPInputStream
+
+class PopulationDumpTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private fun readDump(file: Path): List<String> =
+        GZIPInputStream(Files.newInputStream(file)).bufferedReader().readLines()
+
+    @Test
+    fun dumpHasALinePerViableCell() {
+        val nanoPond = NanoPond()
+        val genome = ByteArray(NanoPond.POND_DEPTH) { 0xf }
+        genome[0] = 0x1
+        genome[1] = 0xa
+        nanoPond.seed(1, 1, genome)
+        nanoPond.seed(2, 1, ByteArray(NanoPond.POND_DEPTH) { (it % 15).toByte() })
+        nanoPond.getCell(3, 1).energy = 100 // active, but not viable
+        val dump = PopulationDump(folder.root.toPath(), 1000)
+
+        assertTrue(dump.take(nanoPond))
+        dump.close()
+
+        val lines = readDump(folder.root.toPath().resolve("-1.dump.csv.gz"))
+        assertEquals(listOf("-1,-1,-1,5,1affff", "-2,-2,-2,5," + "0123456789abcde".repeat(5).take(64)), lines)
+    }
+
+    @Test
+    fun runningPondDumpsPeriodically() {
+        val nanoPond = NanoPond(NanoPond.GenomeLayout.BYTES, Xoroshiro128PlusPlus(2))
+        nanoPond.seed(10, 10, ByteArray(NanoPond.POND_DEPTH) { 0 })
+        val dump = PopulationDump(folder.root.toPath(), 10_000)
+        nanoPond.setPopulationDump(dump)
+
+        nanoPond.stepBatch(30_000)
+        dump.close()
+
+        for (clock in listOf(10_000, 20_000)) {
+            assertTrue(Files.exists(folder.root.toPath().resolve("$clock.dump.csv.gz")))
+        }
+    }
+
+    @Test
+    fun pondOnSeveralThreadsDumpsPeriodically() {
+        val nanoPond = NanoPond(NanoPond.GenomeLayout.BYTES, Xoroshiro128PlusPlus(2))
+        nanoPond.yieldPolicy = YieldPolicy.NONE
+        val dump = PopulationDump(folder.root.toPath(), 50_000)
+        nanoPond.setPopulationDump(dump)
+
+        nanoPond.run(2)
+        while (nanoPond.report.year < 200_000) {
+            Thread.sleep(10)
+        }
+        nanoPond.pauze()
+        dump.close()
+
+        val dumps = folder.root.listFiles()!!.filter { it.name.endsWith(".dump.csv.gz") }
+        assertTrue(dumps.size >= 3)
+    }
+}
@@ -0,0 +1,148 @@
+package be.ppareit.nanopond.core
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.time.Duration
+import java.util.Random
+import java.util.concurrent.atomic.AtomicBoolean
+import kotlin.concurrent.thread
+
+class RenderStateTest {
+
+    private fun seededPond(layout: NanoPond.GenomeLayout): NanoPond {
+        val nanoPond = NanoPond(layout, Xoroshiro128PlusPlus(11))
+        val random = Random(3)
+        repeat(2000) {
+            val genome = ByteArray(NanoPond.POND_DEPTH) { random.nextInt(16).toByte() }
+            nanoPond.seed(random.nextInt(nanoPond.sizeX), random.nextInt(nanoPond.sizeY), genome)
+        }
+        return nanoPond
+    }
+
+    private fun assertShows(nanoPond: NanoPond, snapshot: RenderState.Snapshot) {
+        val cells = nanoPond.sizeX * nanoPond.sizeY
+        val viable = BooleanArray(cells) {
+            val cell = nanoPond.getCell(it)
+            cell.generation > 2 && cell.energy > 0
+        }
+        assertArrayEquals(viable, snapshot.viable)
+        for (i in 0 until cells) {
+            if (viable[i]) {
+                assertEquals(nanoPond.getCell(i).lineage, snapshot.lineage[i])
+                assertEquals(nanoPond.getCell(i).color, snapshot.color[i])
+            }
+        }
+    }
+
+    @Test
+    fun snapshotShowsPublishedPond() {
+        val nanoPond = seededPond(NanoPond.GenomeLayout.BYTES)
+        val renderState = nanoPond.renderState
+        val snapshot = renderState.newSnapshot()
+
+        nanoPond.publishFrame()
+
+        assertTrue(renderState.read(snapshot))
+        assertShows(nanoPond, snapshot)
+        assertFalse(renderState.read(snapshot))
+        assertEquals(0, snapshot.changedCount)
+    }
+
+    @Test
+    fun readersFollowEveryFrameOrSkipFrames() {
+        val nanoPond = seededPond(NanoPond.GenomeLayout.PACKED)
+        val renderState = nanoPond.renderState
+        val everyFrame = renderState.newSnapshot()
+        val everyThirdFrame = renderState.newSnapshot()
+
+        for (frame in 1..30) {
+            nanoPond.stepBatch(10_000)
+            nanoPond.publishFrame()
+            renderState.read(everyFrame)
+            assertShows(nanoPond, everyFrame)
+            if (frame % 3 == 0) {
+                renderState.read(everyThirdFrame)
+                assertShows(nanoPond, everyThirdFrame)
+            }
+        }
+    }
+
+    @Test
+    fun changedCellsAreListed() {
+        val nanoPond = seededPond(NanoPond.GenomeLayout.BYTES)
+        val renderState = nanoPond.renderState
+        val snapshot = renderState.newSnapshot()
+        nanoPond.publishFrame()
+        renderState.read(snapshot)
+
+        nanoPond.getCell(5).generation = 10
+        nanoPond.getCell(5).energy = 100
+        nanoPond.getCell(5).lineage = 1234
+        nanoPond.publishFrame()
+        renderState.read(snapshot)
+
+        assertEquals(1, snapshot.changedCount)
+        assertEquals(5, snapshot.changed[0])
+        assertEquals(1234, snapshot.lineage[5])
+    }
+
+    @Test
+    fun readerOnAnotherThreadEndsWithPausedPond() {
+        val nanoPond = seededPond(NanoPond.GenomeLayout.BYTES)
+        nanoPond.yieldPolicy = YieldPolicy.NONE
+        val renderState = nanoPond.renderState
+        renderState.frameInterval = Duration.ZERO
+        val snapshot = renderState.newSnapshot()
+
+        val reading = AtomicBoolean(true)
+        nanoPond.run(4)
+        val reader = thread {
+            while (reading.get()) {
+                renderState.read(snapshot)
+            }
+        }
+        Thread.sleep(300)
+        nanoPond.pauze()
+        reading.set(false)
+        reader.join()
+        renderState.read(snapshot)
+
+        assertTrue(snapshot.frame > 1)
+        assertShows(nanoPond, snapshot)
+    }
+
+    @Test
+    fun watchedCellIsCopied() {
+        val nanoPond = seededPond(NanoPond.GenomeLayout.PACKED)
+        val renderState = nanoPond.renderState
+        val copy = Cell()
+        assertFalse(renderState.readWatchedCell(copy))
+
+        renderState.setWatchedCell(nanoPond.getIndex(7, 9))
+        nanoPond.stepBatch(10_000)
+        nanoPond.publishFrame()
+
+        val cell = nanoPond.getCell(7, 9)
+        assertTrue(renderState.readWatchedCell(copy))
+        assertEquals(cell.id, copy.id)
+        assertEquals(cell.parentID, copy.parentID)
+        assertEquals(cell.lineage, copy.lineage)
+        assertEquals(cell.generation, copy.generation)
+        assertEquals(cell.energy, copy.energy)
+        assertArrayEquals(cell.genome, copy.genome)
+    }
+
+    @Test(expected = IllegalStateException::class)
+    fun runningPondPublishesItsOwnFrames() {
+        val nanoPond = NanoPond()
+        nanoPond.run()
+        try {
+            nanoPond.publishFrame()
+        } finally {
+            nanoPond.pauze()
+        }
+    }
+}
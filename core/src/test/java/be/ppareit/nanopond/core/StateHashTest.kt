@@ -0,0 +1,70 @@
+package be.ppareit.nanopond.core
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Test
+
+class StateHashTest {
+
+    @Test
+    fun sameSeedGoesThroughTheSameStates() {
+        val first = NanoPond(7)
+        val second = NanoPond(7)
+        val other = NanoPond(8)
+
+        for (pond in listOf(first, second, other)) {
+            pond.stepBatch(300_000)
+        }
+
+        assertEquals(first.stateHash, second.stateHash)
+        assertNotEquals(first.stateHash, other.stateHash)
+    }
+
+    @Test
+    fun everyCellCountsInTheHash() {
+        val nanoPond = NanoPond(7)
+        val hash = nanoPond.stateHash
+
+        nanoPond.getCell(nanoPond.sizeX - 1, nanoPond.sizeY - 1).genome =
+            ByteArray(NanoPond.POND_DEPTH) { 0x1 }
+
+        assertNotEquals(hash, nanoPond.stateHash)
+    }
+
+    @Test
+    fun stateOutsideTheCellsCountsInTheHash() {
+        val nanoPond = NanoPond(7)
+        val geometric = NanoPond(7)
+
+        geometric.mutationSchedule = NanoPond.MutationSchedule.GEOMETRIC
+
+        assertNotEquals(nanoPond.stateHash, geometric.stateHash)
+    }
+
+    /*
+     * Hashes of ponds with seed 42 after one and two million steps, as run one
+     * instruction at a time. Ways of executing faster must give the same hashes.
+     */
+    private val golden = mapOf(
+        NanoPond.MutationSchedule.PER_INSTRUCTION to listOf(
+            0x6bea4bac9167047bUL.toLong(), 0xd8c1e95d938348e6UL.toLong()
+        ),
+        NanoPond.MutationSchedule.GEOMETRIC to listOf(
+            0x1f98df9610cd90c0UL.toLong(), 0xb170c938984fc022UL.toLong()
+        )
+    )
+
+    @Test
+    fun everyLayoutAndScheduleMatchesKnownHashes() {
+        for (layout in NanoPond.GenomeLayout.values()) {
+            for ((schedule, hashes) in golden) {
+                val nanoPond = NanoPond(layout, Xoroshiro128PlusPlus(42))
+                nanoPond.mutationSchedule = schedule
+                for (hash in hashes) {
+                    nanoPond.stepBatch(1_000_000)
+                    assertEquals("$layout $schedule", hash, nanoPond.stateHash)
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package be.ppareit.nanopond.core
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+import java.util.concurrent.atomic.AtomicInteger
+
+class TiledEngineTest {
+
+    private fun halo(tile: TiledEngine.Tile): Set<Pair<Int, Int>> {
+        val cells = HashSet<Pair<Int, Int>>()
+        for (x in tile.x0 - 1..tile.x0 + tile.width) {
+            for (y in tile.y0 - 1..tile.y0 + tile.height) {
+                cells.add(
+                    Pair(
+                        Math.floorMod(x, NanoPond.POND_SIZE_X),
+                        Math.floorMod(y, NanoPond.POND_SIZE_Y)
+                    )
+                )
+            }
+        }
+        return cells
+    }
+
+    @Test
+    fun tilesCoverEveryCellExactlyOnce() {
+        val tiles = TiledEngine.createTiles(
+            NanoPond.POND_SIZE_X,
+            NanoPond.POND_SIZE_Y,
+            TiledEngine.tileCount(8, NanoPond.POND_SIZE_X),
+            TiledEngine.tileCount(8, NanoPond.POND_SIZE_Y)
+        )
+        val covered = Array(NanoPond.POND_SIZE_X) { IntArray(NanoPond.POND_SIZE_Y) }
+
+        tiles.flatten().forEach { tile ->
+            for (x in tile.x0 until tile.x0 + tile.width) {
+                for (y in tile.y0 until tile.y0 + tile.height) {
+                    covered[x][y]++
+                }
+            }
+        }
+
+        assertTrue(covered.all { column -> column.all { it == 1 } })
+    }
+
+    @Test
+    fun tilesOfTheSameColorNeverShareCellsOrNeighbors() {
+        val tiles = TiledEngine.createTiles(
+            NanoPond.POND_SIZE_X,
+            NanoPond.POND_SIZE_Y,
+            TiledEngine.tileCount(8, NanoPond.POND_SIZE_X),
+            TiledEngine.tileCount(8, NanoPond.POND_SIZE_Y)
+        )
+
+        assertEquals(4, tiles.size)
+        for (color in tiles) {
+            val halos = color.map { halo(it) }
+            for (a in halos.indices) {
+                for (b in a + 1 until halos.size) {
+                    assertFalse(halos[a].any { it in halos[b] })
+                }
+            }
+        }
+    }
+
+    @Test
+    fun tileCountIsEvenAndKeepsTilesAtLeastTwoCellsWide() {
+        for (threads in 1..64) {
+            val count = TiledEngine.tileCount(threads, NanoPond.POND_SIZE_Y)
+            assertEquals(0, count % 2)
+            assertTrue(NanoPond.POND_SIZE_Y / count >= 2)
+        }
+    }
+
+    @Test
+    fun runningASmallPondOnSeveralThreads() {
+        val nanoPond = NanoPond(6, 4, NanoPond.GenomeLayout.BYTES, Xoroshiro128PlusPlus(1))
+
+        nanoPond.run(4)
+        Thread.sleep(100)
+        nanoPond.pauze()
+
+        assertTrue(nanoPond.report.year > 0)
+    }
+
+    @Test
+    fun runningOnSeveralThreadsAdvancesTheClock() {
+        val nanoPond = NanoPond()
+
+        nanoPond.run(4)
+        Thread.sleep(200)
+        nanoPond.pauze()
+
+        val report = nanoPond.report
+        assertTrue(report.year > 0)
+        assertEquals(report.year, nanoPond.report.year)
+    }
+
+    @Test(timeout = 10_000)
+    fun clockCanBeFollowedWhileRunningOnSeveralThreads() {
+        val nanoPond = NanoPond()
+
+        nanoPond.run(4)
+        while (nanoPond.clock < 0) {
+            Thread.sleep(10)
+        }
+        assertFalse(nanoPond.hasFailed())
+        nanoPond.pauze()
+
+        assertEquals(nanoPond.report.year, nanoPond.clock)
+    }
+
+    @Test
+    fun workersNeverApplyTheYieldPolicy() {
+        val nanoPond = NanoPond()
+        val calls = AtomicInteger()
+        nanoPond.yieldPolicy = YieldPolicy { calls.incrementAndGet() }
+
+        nanoPond.run(4)
+        Thread.sleep(200)
+        nanoPond.pauze()
+
+        assertTrue(nanoPond.report.year > 0)
+        assertEquals(0, calls.get())
+    }
+
+    @Test(timeout = 10_000)
+    fun pauzeKeepsTheInterruptOfTheCaller() {
+        val nanoPond = NanoPond()
+
+        nanoPond.run(4)
+        Thread.sleep(100)
+        Thread.currentThread().interrupt()
+        nanoPond.pauze()
+
+        assertTrue(Thread.interrupted())
+        assertFalse(nanoPond.isRunning)
+    }
+
+    /* Random source of which the first split off source fails after some numbers */
+    private class FailingSplit(private val source: RandomSource, private var left: Int) :
+        RandomSource by source {
+        val failure = IllegalArgumentException("broken random source")
+        var first: FailingSplit? = null
+        @Volatile
+        var failed = false
+        private var splits = 0
+
+        override fun nextInt(bound: Int): Int {
+            if (--left < 0) {
+                failed = true
+                throw failure
+            }
+            return source.nextInt(bound)
+        }
+
+        override fun split(): RandomSource =
+            if (splits++ == 0) FailingSplit(source.split(), 10_000).also { first = it }
+            else source.split()
+    }
+
+    @Test(timeout = 10_000)
+    fun failingWorkerStopsTheOthersAndIsThrownFromPauze() {
+        val random = FailingSplit(Xoroshiro128PlusPlus(1), Int.MAX_VALUE)
+        val nanoPond = NanoPond(NanoPond.GenomeLayout.BYTES, random)
+
+        nanoPond.run(4)
+        val failing = random.first!!
+        while (!nanoPond.hasFailed()) {
+            Thread.sleep(10)
+        }
+        assertTrue(failing.failed)
+        try {
+            nanoPond.pauze()
+            fail("the failure of the worker is not thrown")
+        } catch (e: IllegalStateException) {
+            assertSame(failing.failure, e.cause)
+        }
+
+        assertFalse(nanoPond.isRunning)
+    }
+}
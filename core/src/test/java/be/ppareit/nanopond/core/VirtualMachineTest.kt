@@ -0,0 +1,155 @@
+package be.ppareit.nanopond.core
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Test
+import java.util.Random
+
+class VirtualMachineTest {
+
+    @Test
+    fun geometricMutationGapKeepsTheMutationRate() {
+        val vm = NanoPond(NanoPond.GenomeLayout.BYTES, Xoroshiro128PlusPlus(1)).newVirtualMachine()
+        val samples = 20000
+
+        var total = 0.0
+        repeat(samples) { total += vm.nextMutationGap() }
+
+        // one mutation every (gap + 1) positions
+        val rate = 1.0 / (total / samples + 1)
+        assertEquals(NanoPond.MUTATION_RATE, rate, NanoPond.MUTATION_RATE * 0.03)
+    }
+
+    /* Random source that splits off sources seeded 100, 101, ... without drawing itself */
+    private class CountingSplit(source: RandomSource) : RandomSource by source {
+        private var splits = 0L
+
+        override fun split(): RandomSource = Xoroshiro128PlusPlus(100 + splits++)
+    }
+
+    /* An evolved pond with geometric mutations, the same for every call */
+    private fun evolvedPond(): NanoPond {
+        val nanoPond = NanoPond(NanoPond.GenomeLayout.BYTES, CountingSplit(Xoroshiro128PlusPlus(3)))
+        nanoPond.mutationSchedule = NanoPond.MutationSchedule.GEOMETRIC
+        nanoPond.stepBatch(300_000)
+        return nanoPond
+    }
+
+    /* Execute the same cells with a machine, returns the hash of the pond afterwards */
+    private fun runOf(nanoPond: NanoPond, vm: VirtualMachine): Long {
+        val random = Random(5)
+        repeat(200_000) {
+            vm.execute(random.nextInt(nanoPond.storage.cells), random.nextInt(4))
+        }
+        return nanoPond.stateHash
+    }
+
+    /* Machine built directly like a worker with split number n, with a schedule or not */
+    private fun directMachine(nanoPond: NanoPond, n: Long,
+                              schedule: NanoPond.MutationSchedule?): VirtualMachine {
+        val vm = VirtualMachine(nanoPond, Xoroshiro128PlusPlus(100 + n),
+            NanoPond.StatCounters(), PondStatistics.forWorker(), HotGenomes())
+        if (schedule != null) {
+            vm.setMutationSchedule(schedule)
+        }
+        return vm
+    }
+
+    @Test
+    fun mutationScheduleIsGivenToWorkers() {
+        val worker = evolvedPond().let { runOf(it, it.newVirtualMachine()) }
+        val geometric = evolvedPond().let {
+            runOf(it, directMachine(it, 0, NanoPond.MutationSchedule.GEOMETRIC))
+        }
+        val perInstruction = evolvedPond().let { runOf(it, directMachine(it, 0, null)) }
+
+        assertEquals(geometric, worker)
+        assertNotEquals(perInstruction, worker)
+    }
+
+    @Test
+    fun mutationScheduleIsGivenToTheMachinesOfTheTiledEngine() {
+        val threads = 3
+        for (n in 0 until threads) {
+            val tiled = evolvedPond().let { runOf(it, TiledEngine(it, threads).machines[n]) }
+            val geometric = evolvedPond().let {
+                runOf(it, directMachine(it, n.toLong(), NanoPond.MutationSchedule.GEOMETRIC))
+            }
+            val perInstruction = evolvedPond().let {
+                runOf(it, directMachine(it, n.toLong(), null))
+            }
+
+            assertEquals(geometric, tiled)
+            assertNotEquals(perInstruction, tiled)
+        }
+    }
+
+    /* Skip one instruction at a time like the execution loop, giving up after many passes */
+    private fun skipOneByOne(genome: ByteArray, position: Int): Int {
+        var depth = 1
+        for (t in 1..NanoPond.POND_DEPTH * 200) {
+            when (genome[(position + t) % NanoPond.POND_DEPTH].toInt()) {
+                0x9 -> depth++
+                0xa -> if (--depth == 0) return t
+            }
+        }
+        return Int.MAX_VALUE
+    }
+
+    @Test
+    fun loopJumpSkipsLikeTheExecutionLoop() {
+        val nanoPond = NanoPond(NanoPond.GenomeLayout.PACKED, Xoroshiro128PlusPlus(1))
+        val genomes = nanoPond.storage.genomes
+        val random = Random(4)
+        repeat(2000) {
+            // mostly LOOP and REP, so there are deep nestings and loops around the end
+            val genome = ByteArray(NanoPond.POND_DEPTH) {
+                when (random.nextInt(5)) {
+                    0, 1 -> 0x9
+                    2, 3 -> 0xa
+                    else -> random.nextInt(16)
+                }.toByte()
+            }
+            nanoPond.seed(0, 0, genome)
+            for (position in 0 until NanoPond.POND_DEPTH) {
+                if (genome[position].toInt() == 0x9) {
+                    assertEquals(
+                        skipOneByOne(genome, position), VirtualMachine.loopJump(genomes, 0, position)
+                    )
+                }
+            }
+        }
+    }
+
+    @Test
+    fun skippedLoopCostsEnergyForEveryInstruction() {
+        val nanoPond = NanoPond(NanoPond.GenomeLayout.BYTES, Xoroshiro128PlusPlus(1))
+        nanoPond.mutationSchedule = NanoPond.MutationSchedule.GEOMETRIC
+        val vm = nanoPond.newVirtualMachine()
+        val genome = ByteArray(NanoPond.POND_DEPTH) { 0xf }
+        // LOOP INC INC REP STOP, the register is zero so the loop is skipped
+        byteArrayOf(0x9, 0x3, 0x3, 0xa).copyInto(genome)
+        nanoPond.seed(0, 0, genome)
+        nanoPond.getCell(0, 0).energy = 100
+
+        vm.execute(0, 0)
+
+        assertEquals(95, nanoPond.getCell(0, 0).energy)
+    }
+
+    @Test
+    fun loopWithoutMatchingRepTakesAllEnergy() {
+        val nanoPond = NanoPond(NanoPond.GenomeLayout.BYTES, Xoroshiro128PlusPlus(1))
+        nanoPond.mutationSchedule = NanoPond.MutationSchedule.GEOMETRIC
+        val vm = nanoPond.newVirtualMachine()
+        val genome = ByteArray(NanoPond.POND_DEPTH) { 0xf }
+        genome[0] = 0x9
+        genome[10] = 0x9
+        nanoPond.seed(0, 0, genome)
+        nanoPond.getCell(0, 0).energy = 1000
+
+        vm.execute(0, 0)
+
+        assertEquals(0, nanoPond.getCell(0, 0).energy)
+    }
+}
@@ -0,0 +1,85 @@
+package be.ppareit.nanopond.core
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class Xoroshiro128PlusPlusTest {
+
+    @Test
+    fun matchesReferenceImplementation() {
+        val random = Xoroshiro128PlusPlus(1, 2)
+
+        assertEquals(0x60001L, random.nextLong())
+        assertEquals(0x260c000660007L, random.nextLong())
+        assertEquals(0x180acc04718606d3L, random.nextLong())
+    }
+
+    @Test
+    fun sameSeedGivesSameSequence() {
+        val a = Xoroshiro128PlusPlus(42)
+        val b = Xoroshiro128PlusPlus(42)
+
+        repeat(1000) { assertEquals(a.nextLong(), b.nextLong()) }
+    }
+
+    @Test
+    fun splitIsDeterministicAndIndependent() {
+        val a = Xoroshiro128PlusPlus(42)
+        val b = Xoroshiro128PlusPlus(42)
+
+        val splitA = a.split()
+        val splitB = b.split()
+
+        repeat(1000) { assertEquals(splitA.nextLong(), splitB.nextLong()) }
+        assertNotEquals(a.nextLong(), splitA.nextLong())
+    }
+
+    @Test
+    fun nextIntStaysInBoundAndHitsEveryValue() {
+        val random = Xoroshiro128PlusPlus(7)
+        val counts = IntArray(16)
+
+        repeat(16000) { counts[random.nextInt(16)]++ }
+
+        assertTrue(counts.all { it in 800..1200 })
+    }
+
+    @Test
+    fun nextDoubleIsInUnitInterval() {
+        val random = Xoroshiro128PlusPlus(7)
+
+        repeat(10000) {
+            val d = random.nextDouble()
+            assertTrue(d >= 0.0 && d < 1.0)
+        }
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun nextIntRejectsNonPositiveBound() {
+        Xoroshiro128PlusPlus(7).nextInt(0)
+    }
+
+    @Test
+    fun restoredStateContinuesTheSequence() {
+        val random = Xoroshiro128PlusPlus(8)
+        random.nextLong()
+        val copy = Xoroshiro128PlusPlus(9)
+
+        copy.setState(random.state)
+
+        repeat(10) { assertEquals(random.nextLong(), copy.nextLong()) }
+    }
+
+    @Test
+    fun restoredMersenneTwisterStateContinuesTheSequence() {
+        val random = MTRandom(8)
+        repeat(1000) { random.nextInt(16) }
+        val copy = MTRandom(9)
+
+        copy.setState(random.state)
+
+        repeat(1000) { assertEquals(random.nextInt(16), copy.nextInt(16)) }
+    }
+}
@@ -0,0 +1,47 @@
+package be.ppareit.nanopond.core
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.time.Duration
+
+class YieldPolicyTest {
+
+    @Test
+    fun stepBatchAdvancesTheClock() {
+        val nanoPond = NanoPond(NanoPond.GenomeLayout.BYTES, Xoroshiro128PlusPlus(5))
+
+        nanoPond.stepBatch(1000)
+
+        assertEquals(999, nanoPond.report.year)
+    }
+
+    @Test
+    fun runForReportsTheStepRate() {
+        val nanoPond = NanoPond(NanoPond.GenomeLayout.BYTES, Xoroshiro128PlusPlus(5))
+        nanoPond.yieldPolicy = YieldPolicy.NONE
+
+        val steps = nanoPond.runFor(Duration.ofMillis(1200))
+
+        assertTrue(steps > 0)
+        assertEquals(steps - 1, nanoPond.report.year)
+        assertTrue(nanoPond.stepsPerSecond > 0)
+    }
+
+    @Test
+    fun frameBudgetSleepsForTheRestOfTheFrame() {
+        val policy = YieldPolicy.frameBudget(Duration.ofMillis(40), Duration.ofMillis(10))
+
+        Thread.sleep(15)
+        val start = System.nanoTime()
+        policy.afterBatch(1)
+        val slept = Duration.ofNanos(System.nanoTime() - start)
+
+        assertTrue("slept $slept", slept >= Duration.ofMillis(15))
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun frameBudgetMustFitInTheFrame() {
+        YieldPolicy.frameBudget(Duration.ofMillis(10), Duration.ofMillis(20))
+    }
+}
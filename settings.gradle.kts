@@ -18,3 +18,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "NanoPond"
 include(":app")
+include(":core")
+include(":benchmarks")
+include(":cli")